@@ -2,21 +2,46 @@ package dev.jh.mathquiz;
 
 import dev.jh.mathquiz.config.Config;
 import dev.jh.mathquiz.config.ConfigLoader;
+import dev.jh.mathquiz.config.ExportConfig;
+import dev.jh.mathquiz.config.ExportFileConfig;
+import dev.jh.mathquiz.config.LoadedProfile;
+import dev.jh.mathquiz.config.ProfileWatcher;
+import dev.jh.mathquiz.config.QuizConfig;
 import dev.jh.mathquiz.export.MathQuizExportException;
 import dev.jh.mathquiz.export.MathQuizExporter;
 import dev.jh.mathquiz.export.json.MathQuizJsonExporter;
 import dev.jh.mathquiz.export.text.MathQuizTextExporter;
+import dev.jh.mathquiz.process.GenerationStatistics;
 import dev.jh.mathquiz.process.MathQuiz;
 import dev.jh.mathquiz.process.MathQuizGenerator;
+import dev.jh.mathquiz.util.constant.Symbols;
 import dev.jh.mathquiz.validate.config.ConfigValidator;
 import dev.jh.mathquiz.validate.config.InvalidConfigException;
 import dev.jh.mathquiz.validate.expression.ExpressionNodeConverter;
+import dev.jh.mathquiz.validate.expression.RejectionReason;
+import dev.jh.mathquiz.validate.expression.ResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class MathQuizProcessor {
@@ -39,31 +64,227 @@ public class MathQuizProcessor {
     Instant processStart = Instant.now();
 
     LOG.info("Loading config to process");
-    String configProfile = configLoader.getConfigProfile();
-    Config config = configLoader.loadProfileConfig(configProfile);
+    List<String> configProfiles = configLoader.getConfigProfiles();
+    if (configProfiles.size() > 1) {
+      processBatch(configProfiles);
+      Instant processEnd = Instant.now();
+      LOG.info("Finished math quiz process in {}ms", Duration.between(processStart, processEnd).toMillis());
+      return;
+    }
 
-    if (config == null) {
+    String configProfile = configProfiles.isEmpty() ? null : configProfiles.get(0);
+    LoadedProfile loadedProfile = configLoader.loadProfile(configProfile);
+
+    if (loadedProfile == null) {
       LOG.info("Stopping math quiz processor (no config to process was loaded)");
       return;
     }
 
-    LOG.info("Validating config...");
     try {
-      configValidator.validate(config);
+      validate(loadedProfile);
       LOG.info("Config is valid - beginning process");
     } catch (InvalidConfigException e) {
       LOG.error("Stopping math quiz processor - config is invalid ({})", e.getMessage());
       return;
     }
+    Instant configLoaded = Instant.now();
+
+    ProfileRun run = process(configProfile, loadedProfile.config(), mathQuizGenerator);
+
+    Instant processEnd = Instant.now();
+    LOG.info("Finished math quiz process in {}ms", Duration.between(processStart, processEnd).toMillis());
+    logStartupTimings(processStart, configLoaded, run.firstQuiz());
+
+    if (configLoader.isProfileWatchEnabled()) {
+      watch(loadedProfile);
+    }
+  }
+
+  /**
+   * Processes several profiles in a single run. All of them are loaded and validated first (skipping invalid ones),
+   * then generated and exported concurrently on a shared pool of at most {@code profiles.parallelism} workers, each
+   * profile with its own generator. The {@code quiz.parallelism} of the profiles is capped so that all of them together
+   * don't use more quiz workers than there are processors.
+   */
+  private void processBatch(List<String> profiles) {
+    List<LoadedProfile> loadedProfiles = new ArrayList<>();
+    for (String profile : profiles) {
+      LoadedProfile loadedProfile = configLoader.loadProfile(profile);
+      if (loadedProfile == null) {
+        LOG.warn("Skipping profile '{}' (no config was loaded)", profile);
+        continue;
+      }
+      try {
+        validate(loadedProfile);
+        loadedProfiles.add(loadedProfile);
+      } catch (InvalidConfigException e) {
+        LOG.error("Skipping profile '{}' - config is invalid ({})", profile, e.getMessage());
+      }
+    }
+    if (loadedProfiles.isEmpty()) {
+      LOG.info("Stopping math quiz processor (no valid config to process was loaded)");
+      return;
+    }
+    if (configLoader.isProfileWatchEnabled()) {
+      LOG.warn("Profiles are only watched for changes when processing a single profile");
+    }
+
+    List<Config> configs = withSeparateExportTargets(loadedProfiles);
+    Integer configuredParallelism = configLoader.getProfileParallelism();
+    int parallelism = configuredParallelism == null || configuredParallelism < 1
+      ? Math.min(loadedProfiles.size(), Runtime.getRuntime().availableProcessors())
+      : Math.min(loadedProfiles.size(), configuredParallelism);
+    LOG.info("Processing {} profiles with {} workers", loadedProfiles.size(), parallelism);
+    configs = withBoundedQuizParallelism(loadedProfiles, configs, parallelism);
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "profile-processor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    List<ProfileRun> runs = new ArrayList<>();
+    try {
+      List<Future<ProfileRun>> pendingRuns = new ArrayList<>();
+      for (int i = 0; i < loadedProfiles.size(); i++) {
+        String profile = loadedProfiles.get(i).profile();
+        Config config = configs.get(i);
+        // the generator keeps the plan and statistics of its runs, so each profile gets its own
+        pendingRuns.add(executor.submit(
+          () -> process(profile, config, new MathQuizGenerator(new ExpressionNodeConverter()))
+        ));
+      }
+      executor.shutdown();
+      for (int i = 0; i < pendingRuns.size(); i++) {
+        try {
+          runs.add(pendingRuns.get(i).get());
+        } catch (ExecutionException e) {
+          LOG.error("Failed to process profile '{}':", loadedProfiles.get(i).profile(), e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while processing profiles");
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (ProfileRun run : runs) {
+      LOG.info(
+        "Profile '{}': generated {} of {} math quizzes in {}ms, {} in {}ms", run.profile(), run.quizzes(),
+        run.amount(), run.generateMillis(), run.exported() ? "exported" : "failed to export", run.exportMillis()
+      );
+    }
+  }
+
+  /**
+   * Returns the configs of the given profiles, with the profile's name added to the export file name of all profiles
+   * that would export to the same file otherwise.
+   */
+  private static List<Config> withSeparateExportTargets(List<LoadedProfile> loadedProfiles) {
+    Map<List<String>, Long> profilesPerTarget = loadedProfiles.stream()
+      .collect(Collectors.groupingBy(p -> exportTarget(p.config()), Collectors.counting()));
+    List<Config> result = new ArrayList<>(loadedProfiles.size());
+    for (LoadedProfile loadedProfile : loadedProfiles) {
+      Config config = loadedProfile.config();
+      if (profilesPerTarget.get(exportTarget(config)) == 1) {
+        result.add(config);
+        continue;
+      }
+      ExportFileConfig file = config.export().file();
+      String name = file.name() == null ? loadedProfile.profile() : withSuffix(file.name(), loadedProfile.profile());
+      LOG.info(
+        "Profile '{}' shares its export target with other profiles, exporting to '{}' instead",
+        loadedProfile.profile(), name
+      );
+      result.add(new Config(
+        new ExportConfig(
+          config.export().format(),
+          new ExportFileConfig(file.path(), name, file.withTimestamp(), file.overwriteExisting())
+        ),
+        config.quiz(), config.variables(), config.equations()
+      ));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the given configs with their quiz parallelism capped to an equal share of the available processors among
+   * the profile workers (but at least 1), as each profile generates its quizzes on a pool of its own.
+   */
+  private static List<Config> withBoundedQuizParallelism(
+    List<LoadedProfile> loadedProfiles, List<Config> configs, int profileParallelism
+  ) {
+    int maxQuizParallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / profileParallelism);
+    List<Config> result = new ArrayList<>(configs.size());
+    for (int i = 0; i < configs.size(); i++) {
+      Config config = configs.get(i);
+      QuizConfig quiz = config.quiz();
+      if (quiz.parallelism() == null || quiz.parallelism() <= maxQuizParallelism) {
+        result.add(config);
+        continue;
+      }
+      LOG.info(
+        "Profile '{}': limiting {} from {} to {} while processing several profiles",
+        loadedProfiles.get(i).profile(), QuizConfig.PARALLELISM, quiz.parallelism(), maxQuizParallelism
+      );
+      result.add(new Config(
+        config.export(),
+        new QuizConfig(
+          quiz.amount(), quiz.equationOrder(), maxQuizParallelism, quiz.seed(), quiz.unique(),
+          quiz.uniqueMemoryBudget(), quiz.retry(), quiz.timeout(), quiz.evaluation(), quiz.resultCacheSize()
+        ),
+        config.variables(), config.equations()
+      ));
+    }
+    return result;
+  }
+
+  private static List<String> exportTarget(Config config) {
+    return Arrays.asList(config.export().file().path(), config.export().file().name());
+  }
 
-    LOG.info("Generating {} math quizzes...", config.quiz().amount());
+  private static String withSuffix(String fileName, String suffix) {
+    int extensionStart = fileName.lastIndexOf(Symbols.DOT);
+    return extensionStart > 0
+      ? fileName.substring(0, extensionStart) + Symbols.HYPHEN + suffix + fileName.substring(extensionStart)
+      : fileName + Symbols.HYPHEN + suffix;
+  }
+
+  /**
+   * Validates a loaded config (also if it was read from a snapshot, so that all warnings of the validator are logged on
+   * every run), and writes its snapshot if it was loaded from the profile's properties.
+   */
+  private void validate(LoadedProfile loadedProfile) throws InvalidConfigException {
+    LOG.info("Validating config...");
+    configValidator.validate(loadedProfile.config());
+    if (!loadedProfile.fromSnapshot()) {
+      configLoader.writeSnapshot(loadedProfile);
+    }
+  }
+
+  private ProfileRun process(String profile, Config config, MathQuizGenerator generator) {
+    LOG.info("Generating {} math quizzes of profile '{}'...", config.quiz().amount(), profile);
     Instant generateStart = Instant.now();
-    List<MathQuiz> quizzes = mathQuizGenerator.generateQuizzes(config);
+    List<MathQuiz> quizzes = new ArrayList<>();
+    Instant firstQuiz = null;
+    try (Stream<MathQuiz> generatedQuizzes = generator.streamQuizzes(config)) {
+      Iterator<MathQuiz> iterator = generatedQuizzes.iterator();
+      while (iterator.hasNext()) {
+        quizzes.add(iterator.next());
+        if (firstQuiz == null) {
+          firstQuiz = Instant.now();
+        }
+      }
+    }
     Instant generateEnd = Instant.now();
     LOG.info(
-      "Finished generating {} math quizzes in {}ms",
-      config.quiz().amount(), Duration.between(generateStart, generateEnd).toMillis()
+      "Finished generating {} math quizzes of profile '{}' in {}ms",
+      quizzes.size(), profile, Duration.between(generateStart, generateEnd).toMillis()
     );
+    if (quizzes.size() < config.quiz().amount()) {
+      LOG.warn("Generated only {} of {} math quizzes of profile '{}'", quizzes.size(), config.quiz().amount(), profile);
+    }
+    logStatistics(profile, generator.statistics());
 
 
     MathQuizExporter exporter = switch (config.export().format()) {
@@ -72,14 +293,137 @@ public class MathQuizProcessor {
     };
     LOG.info("Determined export format: {}", config.export().format());
 
+    boolean exported = true;
     try {
       exporter.export(config, quizzes);
     } catch (MathQuizExportException e) {
-      LOG.warn("Failed to export math quizzes ({})", e.getMessage());
+      LOG.warn("Failed to export math quizzes of profile '{}' ({})", profile, e.getMessage());
+      exported = false;
     }
+    Instant exportEnd = Instant.now();
 
-    Instant processEnd = Instant.now();
-    LOG.info("Finished math quiz process in {}ms", Duration.between(processStart, processEnd).toMillis());
+    long generateMillis = Duration.between(generateStart, generateEnd).toMillis();
+    long exportMillis = Duration.between(generateEnd, exportEnd).toMillis();
+    return new ProfileRun(
+      profile, quizzes.size(), config.quiz().amount(), firstQuiz, generateMillis, exported, exportMillis
+    );
+  }
+
+  /**
+   * Watches the profile for changes until the process is stopped, processing each valid change again. Changes are
+   * reloaded, validated and compiled on the watcher's thread, so a run in flight keeps generating with the config it
+   * started with. Invalid changes are rejected, keeping the last valid config active.
+   */
+  private void watch(LoadedProfile loadedProfile) {
+    String profile = loadedProfile.profile();
+    AtomicReference<LoadedProfile> activeProfile = new AtomicReference<>(loadedProfile);
+    BlockingQueue<Config> reloadedConfigs = new LinkedBlockingQueue<>();
+    Runnable reload = () -> {
+      LoadedProfile reloadedProfile = configLoader.loadProfile(profile);
+      if (reloadedProfile == null) {
+        LOG.warn("Failed to reload profile '{}' - keeping last valid config", profile);
+        return;
+      } else if (Arrays.equals(reloadedProfile.sourceHash(), activeProfile.get().sourceHash())) {
+        LOG.debug("Profile '{}' was written without changes", profile);
+        return;
+      }
+      try {
+        validate(reloadedProfile);
+      } catch (InvalidConfigException e) {
+        LOG.warn("Rejected change of profile '{}' - keeping last valid config ({})", profile, e.getMessage());
+        return;
+      }
+      mathQuizGenerator.prepare(reloadedProfile.config());
+      activeProfile.set(reloadedProfile);
+      LOG.info("Reloaded profile '{}'", profile);
+      reloadedConfigs.add(reloadedProfile.config());
+    };
+
+    try (ProfileWatcher watcher = new ProfileWatcher(configLoader.getProfilePath(profile), reload)) {
+      while (true) {
+        LOG.info("Watching '{}' for changes", watcher.profilePath());
+        // only the latest change is processed if several were made during the last run
+        Config config = reloadedConfigs.take();
+        Config newerConfig;
+        while ((newerConfig = reloadedConfigs.poll()) != null) {
+          config = newerConfig;
+        }
+        mathQuizGenerator.statistics().reset();
+        process(profile, config, mathQuizGenerator);
+      }
+    } catch (IOException e) {
+      LOG.error("Failed to watch profile '{}' for changes:", profile, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.info("Stopped watching profile '{}'", profile);
+    }
+  }
+
+  /**
+   * Logs the time to the first generated quiz, split into starting the JVM (including loading the processor's classes
+   * and configuring logging), loading and validating the config and generating the first quiz.
+   */
+  private static void logStartupTimings(Instant processStart, Instant configLoaded, Instant firstQuiz) {
+    if (firstQuiz == null) {
+      return;
+    }
+    // only looked up once the quizzes are generated, as loading the management classes takes a while itself
+    Instant jvmStart = Instant.ofEpochMilli(ManagementFactory.getRuntimeMXBean().getStartTime());
+    LOG.info(
+      "Startup timings: JVM {}ms, config {}ms, first quiz {}ms - time to first quiz: {}ms",
+      Duration.between(jvmStart, processStart).toMillis(), Duration.between(processStart, configLoaded).toMillis(),
+      Duration.between(configLoaded, firstQuiz).toMillis(), Duration.between(jvmStart, firstQuiz).toMillis()
+    );
+  }
+
+  /**
+   * Logs the statistics of a profile's run, every line prefixed with the profile's name, as the lines of several
+   * profiles processed concurrently interleave.
+   */
+  private void logStatistics(String profile, GenerationStatistics statistics) {
+    LOG.info(
+      "Profile '{}': generated {} quizzes in {} attempts ({} quizzes failed)",
+      profile, statistics.quizzesGenerated(), statistics.quizAttempts(), statistics.quizzesFailed()
+    );
+    if (statistics.duplicatesRejected() > 0) {
+      LOG.info("Profile '{}': rejected {} duplicate quizzes", profile, statistics.duplicatesRejected());
+    }
+    ResultCache resultCache = statistics.resultCache();
+    if (resultCache != null) {
+      LOG.info(
+        "Profile '{}': result cache of {} entries: {} hits, {} misses ({})", profile, resultCache.size(),
+        resultCache.hits(), resultCache.misses(), String.format("%.1f%%", resultCache.hitRate() * 100)
+      );
+    }
+    statistics.equations().forEach((index, equation) -> {
+      StringJoiner rejections = new StringJoiner(", ");
+      for (RejectionReason reason : RejectionReason.values()) {
+        if (equation.rejections(reason) > 0) {
+          rejections.add(reason + "=" + equation.rejections(reason));
+        }
+      }
+      LOG.info(
+        "Profile '{}': equation #{}: {} attempts, {} accepted ({}), {} failed, rejections: [{}], attempts per "
+          + "equation: {}",
+        profile, index, equation.attempts(), equation.accepted(),
+        String.format("%.1f%%", equation.acceptanceRate() * 100), equation.failed(), rejections,
+        equation.attemptHistogram()
+      );
+    });
+  }
+
+  /**
+   * @param firstQuiz the time the first quiz was generated at, or null if no quiz was generated
+   */
+  private record ProfileRun(
+    String profile,
+    int quizzes,
+    int amount,
+    Instant firstQuiz,
+    long generateMillis,
+    boolean exported,
+    long exportMillis
+  ) {
   }
 
 }
@@ -4,54 +4,170 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import dev.jh.mathquiz.export.ExportFormat;
+import dev.jh.mathquiz.process.EquationStrategy;
 import dev.jh.mathquiz.process.Operand;
+import dev.jh.mathquiz.process.RetryPolicy;
 import dev.jh.mathquiz.util.*;
 import dev.jh.mathquiz.util.constant.Symbols;
 import dev.jh.mathquiz.util.type.Range;
+import dev.jh.mathquiz.validate.expression.EvaluationMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 public class ConfigLoader {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConfigLoader.class);
   private static final String CONFIG_PROPERTIES = "config.properties";
-  private static final String PROFILE_PROPERTIES_PATH_TEMPLATE = "profiles/%s.properties";
+  // system property to load the config from another file, resolving profiles relative to its directory
+  private static final String CONFIG_PROPERTIES_PATH = "mathquiz.config";
+  private static final String PROFILE_PROPERTIES_EXTENSION = ".properties";
+  private static final String PROFILE_PROPERTIES_PATH_TEMPLATE = "profiles/%s" + PROFILE_PROPERTIES_EXTENSION;
+  private static final String PROFILE_SNAPSHOT_PATH_TEMPLATE = "profiles/.snapshots/%s.bin";
   private static final String PROFILES_USE = "profiles.use";
+  private static final String PROFILES_WATCH = "profiles.watch";
+  private static final String PROFILES_PARALLELISM = "profiles.parallelism";
+  private static final String STARTUP_FAST = "startup.fast";
 
-  public String getConfigProfile() {
-    LOG.info("Loading config profile from '{}'", CONFIG_PROPERTIES);
-    Properties properties;
-    try {
-      properties = FileUtil.loadProperties(CONFIG_PROPERTIES);
-    } catch (IOException e) {
-      LOG.error("Failed to get config profile due to exception", e);
-      return null;
+  private final Path configPropertiesPath;
+  private final Path baseDirectory;
+  private Properties configProperties;
+
+  public ConfigLoader() {
+    this(Path.of(System.getProperty(CONFIG_PROPERTIES_PATH, CONFIG_PROPERTIES)));
+  }
+
+  public ConfigLoader(Path configPropertiesPath) {
+    this.configPropertiesPath = configPropertiesPath;
+    this.baseDirectory = configPropertiesPath.getParent() == null ? Path.of("") : configPropertiesPath.getParent();
+  }
+
+  /**
+   * Returns the profiles to process, in the order they are listed. Profiles are separated by commas, and each of them
+   * may be a glob pattern (like {@code grade-*}) matching the names of several profiles, which are added sorted by
+   * name.
+   */
+  public List<String> getConfigProfiles() {
+    LOG.info("Loading config profiles from '{}'", configPropertiesPath);
+    Properties properties = loadConfigProperties();
+    if (properties == null) {
+      return List.of();
     }
-    String configProfile = properties.getProperty(PROFILES_USE);
-    if (configProfile == null) {
+    List<String> entries = PropertiesUtil.getStringList(properties, PROFILES_USE, Symbols.COMMA, null);
+    if (entries == null) {
       LOG.warn("Could not find config profile - make sure a value for '{}' is set", PROFILES_USE);
-    } else {
-      LOG.info("Found config profile '{}'", configProfile);
+      return List.of();
+    }
+
+    Set<String> result = new LinkedHashSet<>();
+    for (String entry : entries) {
+      String profile = entry.trim();
+      if (!isGlobPattern(profile)) {
+        result.add(profile);
+        continue;
+      }
+      List<String> matches = findProfiles(profile);
+      if (matches.isEmpty()) {
+        LOG.warn("Could not find any config profile matching '{}' defined in '{}'", profile, PROFILES_USE);
+      }
+      result.addAll(matches);
+    }
+    LOG.info("Found config profiles {}", result);
+    return new ArrayList<>(result);
+  }
+
+  /**
+   * Returns how many profiles may be processed at the same time, or null if it isn't set.
+   */
+  public Integer getProfileParallelism() {
+    Properties properties = loadConfigProperties();
+    return properties == null ? null : PropertiesUtil.getInteger(properties, PROFILES_PARALLELISM, null);
+  }
+
+  /**
+   * Returns whether startup should be kept as short as possible, skipping everything that isn't needed to generate
+   * quizzes (like logging the loaded config as JSON, which needs Jackson).
+   */
+  public boolean isFastStartEnabled() {
+    Properties properties = loadConfigProperties();
+    return properties != null && Boolean.TRUE.equals(PropertiesUtil.getBoolean(properties, STARTUP_FAST, false));
+  }
+
+  /**
+   * Returns whether the profile should be watched for changes, to generate quizzes again with the changed config.
+   */
+  public boolean isProfileWatchEnabled() {
+    Properties properties = loadConfigProperties();
+    return properties != null && Boolean.TRUE.equals(PropertiesUtil.getBoolean(properties, PROFILES_WATCH, false));
+  }
+
+  public Path getProfilePath(String profile) {
+    return baseDirectory.resolve(String.format(PROFILE_PROPERTIES_PATH_TEMPLATE, profile));
+  }
+
+  private static boolean isGlobPattern(String profile) {
+    return profile.contains(Symbols.ASTERISK) || profile.contains(Symbols.QUESTION_MARK)
+      || profile.contains(Symbols.SQUARE_BRACKET_OPEN);
+  }
+
+  private List<String> findProfiles(String pattern) {
+    Path profilePath = getProfilePath(pattern);
+    List<String> result = new ArrayList<>();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(
+      profilePath.toAbsolutePath().getParent(), profilePath.getFileName().toString()
+    )) {
+      for (Path path : paths) {
+        String fileName = path.getFileName().toString();
+        result.add(fileName.substring(0, fileName.length() - PROFILE_PROPERTIES_EXTENSION.length()));
+      }
+    } catch (IOException e) {
+      LOG.error("Failed to find config profiles matching '{}' due to exception", pattern, e);
     }
-    return properties.getProperty(PROFILES_USE);
+    Collections.sort(result);
+    return result;
   }
 
-  public Config loadProfileConfig(String profile) {
+  /**
+   * Loads the config of a profile, from its snapshot if there is one for the current content of its properties file.
+   */
+  public LoadedProfile loadProfile(String profile) {
     if (StringUtil.hasNoContent(profile)) {
       LOG.warn("Could not load profile config (profile is null)");
       return null;
     }
 
-    String profilePropertiesFileName = String.format(PROFILE_PROPERTIES_PATH_TEMPLATE, profile);
-    LOG.info("Loading profile config from '{}'", profilePropertiesFileName);
+    Path profilePath = getProfilePath(profile);
+    LOG.info("Loading profile config from '{}'", profilePath);
+
+    byte[] source;
+    try {
+      source = Files.readAllBytes(profilePath);
+    } catch (IOException e) {
+      LOG.error("Failed to load profile config profile due to exception:", e);
+      return null;
+    }
+    byte[] sourceHash = ProfileSnapshot.hash(source);
+
+    Path snapshotPath = baseDirectory.resolve(String.format(PROFILE_SNAPSHOT_PATH_TEMPLATE, profile));
+    try {
+      Config snapshotConfig = ProfileSnapshot.read(snapshotPath, sourceHash);
+      if (snapshotConfig != null) {
+        LOG.info("Loaded profile config from snapshot '{}'", snapshotPath);
+        return new LoadedProfile(profile, snapshotConfig, sourceHash, true);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to read profile snapshot '{}', loading profile config instead ({})", snapshotPath, e.toString());
+    }
 
     Properties properties;
     try {
-      properties = FileUtil.loadProperties(profilePropertiesFileName);
+      properties = FileUtil.loadProperties(source);
     } catch (IOException e) {
       LOG.error("Failed to load profile config profile due to exception:", e);
       return null;
@@ -59,12 +175,41 @@ public class ConfigLoader {
 
     ExportConfig exportConfig = loadExportConfig(properties);
     QuizConfig quizConfig = loadQuizConfig(properties);
-    LinkedList<VariableConfig> variableConfigs = loadVariableConfigs(properties);
-    LinkedList<EquationConfig> equationConfigs = loadEquationConfigs(properties);
+    Map<String, NavigableMap<Integer, Properties>> propertiesPerIndex =
+      PropertiesUtil.toPropertiesPerIndexMap(properties, VariableConfig.PREFIX, EquationConfig.PREFIX);
+    LinkedList<VariableConfig> variableConfigs = loadVariableConfigs(propertiesPerIndex.get(VariableConfig.PREFIX));
+    LinkedList<EquationConfig> equationConfigs = loadEquationConfigs(propertiesPerIndex.get(EquationConfig.PREFIX));
 
     Config result = new Config(exportConfig, quizConfig, variableConfigs, equationConfigs);
     debugLogLoadedConfig(result);
-    return result;
+    return new LoadedProfile(profile, result, sourceHash, false);
+  }
+
+  /**
+   * Writes the snapshot of a validated profile config, so that later runs can skip parsing its properties file as long
+   * as it doesn't change. Failing to write it only costs that speedup, so it is logged and ignored.
+   */
+  public void writeSnapshot(LoadedProfile loadedProfile) {
+    Path snapshotPath = baseDirectory.resolve(String.format(PROFILE_SNAPSHOT_PATH_TEMPLATE, loadedProfile.profile()));
+    try {
+      ProfileSnapshot.write(snapshotPath, loadedProfile.sourceHash(), loadedProfile.config());
+      LOG.debug("Wrote profile snapshot '{}'", snapshotPath);
+    } catch (IOException e) {
+      LOG.warn("Failed to write profile snapshot '{}' ({})", snapshotPath, e.toString());
+    }
+  }
+
+  private Properties loadConfigProperties() {
+    if (configProperties != null) {
+      return configProperties;
+    }
+    try {
+      configProperties = FileUtil.loadProperties(configPropertiesPath.toString());
+      return configProperties;
+    } catch (IOException e) {
+      LOG.error("Failed to load '{}' due to exception", configPropertiesPath, e);
+      return null;
+    }
   }
 
   private ExportConfig loadExportConfig(Properties properties) {
@@ -89,19 +234,46 @@ public class ConfigLoader {
     LinkedList<Integer> equationOrder = PropertiesUtil.getIntegerLinkedList(
       properties, QuizConfig.EQUATION_ORDER, Symbols.COMMA, null
     );
-    return new QuizConfig(amount, equationOrder);
+    Integer parallelism = PropertiesUtil.getInteger(properties, QuizConfig.PARALLELISM, null);
+    Long seed = PropertiesUtil.getLong(properties, QuizConfig.SEED, null);
+    Boolean unique = PropertiesUtil.getBoolean(properties, QuizConfig.UNIQUE, null);
+    Integer uniqueMemoryBudget = PropertiesUtil.getInteger(properties, QuizConfig.UNIQUE_MEMORY_BUDGET, null);
+    String evaluationString = properties.getProperty(QuizConfig.EVALUATION);
+    EvaluationMode evaluation = EvaluationMode.byText(evaluationString);
+    if (evaluationString != null && evaluation == null) {
+      LOG.warn(
+        "Could not resolve evaluation mode for value '{}' defined in '{}'", evaluationString, QuizConfig.EVALUATION
+      );
+    }
+    Integer resultCacheSize = PropertiesUtil.getInteger(properties, QuizConfig.RESULT_CACHE_SIZE, null);
+    return new QuizConfig(
+      amount, equationOrder, parallelism, seed, unique, uniqueMemoryBudget,
+      loadQuizRetryConfig(properties), loadQuizTimeoutConfig(properties), evaluation, resultCacheSize
+    );
   }
 
-  private LinkedList<VariableConfig> loadVariableConfigs(Properties properties) {
-    LinkedList<VariableConfig> result = new LinkedList<>();
-
-    Map<Integer, Properties> propertiesPerIndex =
-      PropertiesUtil.toPropertiesPerIndexMap(properties, VariableConfig.PREFIX);
+  private QuizRetryConfig loadQuizRetryConfig(Properties properties) {
+    String policyString = properties.getProperty(QuizRetryConfig.POLICY);
+    RetryPolicy policy = RetryPolicy.byText(policyString);
+    if (policyString != null && policy == null) {
+      LOG.warn("Could not resolve retry policy for value '{}' defined in '{}'", policyString, QuizRetryConfig.POLICY);
+    }
+    Integer quizAttempts = PropertiesUtil.getInteger(properties, QuizRetryConfig.QUIZ_ATTEMPTS, null);
+    Integer equationAttempts = PropertiesUtil.getInteger(properties, QuizRetryConfig.EQUATION_ATTEMPTS, null);
+    Integer attemptBudget = PropertiesUtil.getInteger(properties, QuizRetryConfig.ATTEMPT_BUDGET, null);
+    Integer identicalRejections = PropertiesUtil.getInteger(properties, QuizRetryConfig.IDENTICAL_REJECTIONS, null);
+    return new QuizRetryConfig(policy, quizAttempts, equationAttempts, attemptBudget, identicalRejections);
+  }
 
-    NavigableMap<Integer, Properties> orderedPropertiesPerIndex =
-      CollectionUtil.toKeySortedMap(propertiesPerIndex, true);
+  private QuizTimeoutConfig loadQuizTimeoutConfig(Properties properties) {
+    Long run = PropertiesUtil.getLong(properties, QuizTimeoutConfig.RUN, null);
+    Long quiz = PropertiesUtil.getLong(properties, QuizTimeoutConfig.QUIZ, null);
+    return new QuizTimeoutConfig(run, quiz);
+  }
 
-    orderedPropertiesPerIndex.forEach(
+  private LinkedList<VariableConfig> loadVariableConfigs(NavigableMap<Integer, Properties> propertiesPerIndex) {
+    LinkedList<VariableConfig> result = new LinkedList<>();
+    propertiesPerIndex.forEach(
       (index, variableProperties) -> result.add(loadVariableConfig(variableProperties, index))
     );
     return result;
@@ -113,16 +285,9 @@ public class ConfigLoader {
     return new VariableConfig(identifier, range);
   }
 
-  private LinkedList<EquationConfig> loadEquationConfigs(Properties properties) {
+  private LinkedList<EquationConfig> loadEquationConfigs(NavigableMap<Integer, Properties> propertiesPerIndex) {
     LinkedList<EquationConfig> result = new LinkedList<>();
-
-    Map<Integer, Properties> propertiesPerIndex =
-      PropertiesUtil.toPropertiesPerIndexMap(properties, EquationConfig.PREFIX);
-
-    NavigableMap<Integer, Properties> orderedPropertiesPerIndex =
-      CollectionUtil.toKeySortedMap(propertiesPerIndex, true);
-
-    orderedPropertiesPerIndex.forEach(
+    propertiesPerIndex.forEach(
       (index, variableProperties) -> result.add(loadEquationConfig(variableProperties, index))
     );
     return result;
@@ -189,6 +354,14 @@ public class ConfigLoader {
     Boolean hideSolution = PropertiesUtil.getBoolean(
       properties, String.format(EquationSolutionConfig.HIDE, index), null
     );
+    String strategyString = properties.getProperty(String.format(EquationConfig.STRATEGY, index));
+    EquationStrategy strategy = EquationStrategy.byText(strategyString);
+    if (strategyString != null && strategy == null) {
+      LOG.warn(
+        "Could not resolve equation strategy for value '{}' defined in '{}'",
+        strategyString, String.format(EquationConfig.STRATEGY, index)
+      );
+    }
     return new EquationConfig(
       operands,
       new EquationVariableConfig(
@@ -203,17 +376,34 @@ public class ConfigLoader {
       ),
       new EquationSolutionConfig(
         solutionRange, hideSolution
-      )
+      ),
+      strategy
     );
   }
 
   private void debugLogLoadedConfig(Config config) {
-    try {
-      ObjectWriter objectWriter = new ObjectMapper().writerWithDefaultPrettyPrinter();
-      String json = objectWriter.writeValueAsString(config);
-      LOG.debug("Loaded config with the following values:\n{}", json);
-    } catch (JsonProcessingException e) {
-      LOG.debug("Failed to log loaded config as JSON:", e);
+    if (!LOG.isDebugEnabled()) {
+      return;
+    } else if (isFastStartEnabled()) {
+      LOG.debug("Skipped logging loaded config as JSON (fast start is enabled)");
+      return;
+    }
+    JsonConfigLog.log(config);
+  }
+
+  /**
+   * Logs configs as JSON. Kept in its own class, so that Jackson is only loaded once a config is actually logged.
+   */
+  private static final class JsonConfigLog {
+
+    static void log(Config config) {
+      try {
+        ObjectWriter objectWriter = new ObjectMapper().writerWithDefaultPrettyPrinter();
+        String json = objectWriter.writeValueAsString(config);
+        LOG.debug("Loaded config with the following values:\n{}", json);
+      } catch (JsonProcessingException e) {
+        LOG.debug("Failed to log loaded config as JSON:", e);
+      }
     }
 
   }
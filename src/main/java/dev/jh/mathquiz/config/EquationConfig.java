@@ -1,5 +1,6 @@
 package dev.jh.mathquiz.config;
 
+import dev.jh.mathquiz.process.EquationStrategy;
 import dev.jh.mathquiz.process.Operand;
 
 import java.util.List;
@@ -9,8 +10,10 @@ public record EquationConfig(
   EquationVariableConfig variables,
   EquationMutationConfig mutation,
   EquationValidationConfig validate,
-  EquationSolutionConfig solution
+  EquationSolutionConfig solution,
+  EquationStrategy strategy
 ) {
   public static final String PREFIX = "equation.";
   public static final String OPERANDS = "equation.%d.operands";
+  public static final String STRATEGY = "equation.%d.strategy";
 }
@@ -0,0 +1,17 @@
+package dev.jh.mathquiz.config;
+
+/**
+ * A profile config as loaded by the {@link ConfigLoader}, with the hash of the properties file it was loaded from.
+ *
+ * @param profile      the name of the profile
+ * @param config       the loaded config
+ * @param sourceHash   the SHA-256 hash of the profile's properties file
+ * @param fromSnapshot whether the config was read from the profile's snapshot instead of its properties file
+ */
+public record LoadedProfile(
+  String profile,
+  Config config,
+  byte[] sourceHash,
+  boolean fromSnapshot
+) {
+}
@@ -0,0 +1,334 @@
+package dev.jh.mathquiz.config;
+
+import dev.jh.mathquiz.export.ExportFormat;
+import dev.jh.mathquiz.process.EquationStrategy;
+import dev.jh.mathquiz.process.Operand;
+import dev.jh.mathquiz.process.RetryPolicy;
+import dev.jh.mathquiz.util.type.Range;
+import dev.jh.mathquiz.validate.expression.EvaluationMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Binary snapshot of a profile config, keyed by the SHA-256 hash of the properties file it was loaded from. It only
+ * saves parsing the properties: a config read back from a snapshot is validated like any other. A snapshot is only read
+ * back if it was written for exactly the same file content and in the current format, so editing the profile (or
+ * updating to a version with a different format) simply rebuilds it.
+ * <p>
+ * The snapshot contains the config only: the generation plans compiled from it hold the per-run state of their
+ * samplers and caches, so they are compiled from the config on every run.
+ */
+final class ProfileSnapshot {
+
+  private static final int MAGIC = 0x4D515053;
+  // bump whenever the config records or their encoding below change
+  private static final int FORMAT_VERSION = 1;
+  private static final int HASH_LENGTH = 32;
+
+  private ProfileSnapshot() {
+  }
+
+  static byte[] hash(byte[] source) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(source);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Reads the config of a snapshot, or returns null if there is no snapshot or it doesn't match the given source hash
+   * and the current format.
+   */
+  static Config read(Path path, byte[] sourceHash) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      byte[] hash = new byte[HASH_LENGTH];
+      in.readFully(hash);
+      if (!MessageDigest.isEqual(hash, sourceHash)) {
+        return null;
+      }
+      return readConfig(in);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes the snapshot of a config to a temporary file first and then moves it into place, so that a snapshot is
+   * never read back half-written.
+   */
+  static void write(Path path, byte[] sourceHash, Config config) throws IOException {
+    Path directory = path.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temporaryPath = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+    try {
+      try (
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))
+      ) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.write(sourceHash);
+        writeConfig(out, config);
+      }
+      Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+  }
+
+  private static void writeConfig(DataOutputStream out, Config config) throws IOException {
+    ExportConfig export = config.export();
+    writeEnum(out, export.format());
+    writeString(out, export.file().path());
+    writeString(out, export.file().name());
+    writeBoolean(out, export.file().withTimestamp());
+    writeBoolean(out, export.file().overwriteExisting());
+
+    QuizConfig quiz = config.quiz();
+    writeInteger(out, quiz.amount());
+    writeIntegers(out, quiz.equationOrder());
+    writeInteger(out, quiz.parallelism());
+    writeLong(out, quiz.seed());
+    writeBoolean(out, quiz.unique());
+    writeInteger(out, quiz.uniqueMemoryBudget());
+    writeEnum(out, quiz.retry().policy());
+    writeInteger(out, quiz.retry().quizAttempts());
+    writeInteger(out, quiz.retry().equationAttempts());
+    writeInteger(out, quiz.retry().attemptBudget());
+    writeInteger(out, quiz.retry().identicalRejections());
+    writeLong(out, quiz.timeout().run());
+    writeLong(out, quiz.timeout().quiz());
+    writeEnum(out, quiz.evaluation());
+    writeInteger(out, quiz.resultCacheSize());
+
+    out.writeInt(config.variables().size());
+    for (VariableConfig variable : config.variables()) {
+      writeString(out, variable.identifier());
+      writeRange(out, variable.range());
+    }
+
+    out.writeInt(config.equations().size());
+    for (EquationConfig equation : config.equations()) {
+      out.writeInt(equation.operands().size());
+      for (Operand operand : equation.operands()) {
+        writeEnum(out, operand);
+      }
+      writeInteger(out, equation.variables().amount());
+      if (writePresence(out, equation.variables().combos())) {
+        out.writeInt(equation.variables().combos().size());
+        for (List<String> combo : equation.variables().combos()) {
+          writeStrings(out, combo);
+        }
+      }
+      writeBoolean(out, equation.variables().asIdentifiers());
+      writeBoolean(out, equation.mutation().enabled());
+      writeBigDecimal(out, equation.mutation().chance());
+      writeBigDecimal(out, equation.mutation().multiplier());
+      writeRange(out, equation.mutation().amplifier());
+      writeStrings(out, equation.mutation().affectedVariables());
+      writeBoolean(out, equation.validate().selfDivision());
+      writeBoolean(out, equation.validate().selfSubtraction());
+      writeBoolean(out, equation.validate().negativeResults());
+      writeBoolean(out, equation.validate().decimalResults());
+      writeBoolean(out, equation.validate().decimalSolution());
+      writeRange(out, equation.solution().range());
+      writeBoolean(out, equation.solution().hide());
+      writeEnum(out, equation.strategy());
+    }
+  }
+
+  private static Config readConfig(DataInputStream in) throws IOException {
+    ExportConfig export = new ExportConfig(
+      readEnum(in, ExportFormat.class),
+      new ExportFileConfig(readString(in), readString(in), readBoolean(in), readBoolean(in))
+    );
+
+    QuizConfig quiz = new QuizConfig(
+      readInteger(in),
+      readIntegers(in),
+      readInteger(in),
+      readLong(in),
+      readBoolean(in),
+      readInteger(in),
+      new QuizRetryConfig(
+        readEnum(in, RetryPolicy.class), readInteger(in), readInteger(in), readInteger(in), readInteger(in)
+      ),
+      new QuizTimeoutConfig(readLong(in), readLong(in)),
+      readEnum(in, EvaluationMode.class),
+      readInteger(in)
+    );
+
+    LinkedList<VariableConfig> variables = new LinkedList<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      variables.add(new VariableConfig(readString(in), readRange(in)));
+    }
+
+    LinkedList<EquationConfig> equations = new LinkedList<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      List<Operand> operands = new ArrayList<>();
+      for (int j = in.readInt(); j > 0; j--) {
+        operands.add(readEnum(in, Operand.class));
+      }
+      Integer variablesAmount = readInteger(in);
+      List<List<String>> combos = null;
+      if (in.readBoolean()) {
+        combos = new ArrayList<>();
+        for (int j = in.readInt(); j > 0; j--) {
+          combos.add(readStrings(in));
+        }
+      }
+      equations.add(new EquationConfig(
+        operands,
+        new EquationVariableConfig(variablesAmount, combos, readBoolean(in)),
+        new EquationMutationConfig(
+          readBoolean(in), readBigDecimal(in), readBigDecimal(in), readRange(in), readStrings(in)
+        ),
+        new EquationValidationConfig(
+          readBoolean(in), readBoolean(in), readBoolean(in), readBoolean(in), readBoolean(in)
+        ),
+        new EquationSolutionConfig(readRange(in), readBoolean(in)),
+        readEnum(in, EquationStrategy.class)
+      ));
+    }
+
+    return new Config(export, quiz, variables, equations);
+  }
+
+  private static boolean writePresence(DataOutputStream out, Object value) throws IOException {
+    out.writeBoolean(value != null);
+    return value != null;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (writePresence(out, value)) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+    if (writePresence(out, value)) {
+      out.writeInt(value);
+    }
+  }
+
+  private static Integer readInteger(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readInt() : null;
+  }
+
+  private static void writeLong(DataOutputStream out, Long value) throws IOException {
+    if (writePresence(out, value)) {
+      out.writeLong(value);
+    }
+  }
+
+  private static Long readLong(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+
+  private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+    if (writePresence(out, value)) {
+      out.writeBoolean(value);
+    }
+  }
+
+  private static Boolean readBoolean(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readBoolean() : null;
+  }
+
+  private static void writeBigDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+    // the string form keeps the scale, so values are read back exactly as they were parsed
+    writeString(out, value == null ? null : value.toString());
+  }
+
+  private static BigDecimal readBigDecimal(DataInputStream in) throws IOException {
+    String value = readString(in);
+    return value == null ? null : new BigDecimal(value);
+  }
+
+  private static void writeRange(DataOutputStream out, Range value) throws IOException {
+    if (writePresence(out, value)) {
+      writeBigDecimal(out, value.min());
+      writeBigDecimal(out, value.max());
+    }
+  }
+
+  private static Range readRange(DataInputStream in) throws IOException {
+    return in.readBoolean() ? new Range(readBigDecimal(in), readBigDecimal(in)) : null;
+  }
+
+  private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+    writeString(out, value == null ? null : value.name());
+  }
+
+  private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> type) throws IOException {
+    String name = readString(in);
+    try {
+      return name == null ? null : Enum.valueOf(type, name);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(String.format("unknown %s '%s'", type.getSimpleName(), name), e);
+    }
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+    if (writePresence(out, values)) {
+      out.writeInt(values.size());
+      for (String value : values) {
+        writeString(out, value);
+      }
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream in) throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    List<String> result = new ArrayList<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      result.add(readString(in));
+    }
+    return result;
+  }
+
+  private static void writeIntegers(DataOutputStream out, List<Integer> values) throws IOException {
+    if (writePresence(out, values)) {
+      out.writeInt(values.size());
+      for (Integer value : values) {
+        writeInteger(out, value);
+      }
+    }
+  }
+
+  private static LinkedList<Integer> readIntegers(DataInputStream in) throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    LinkedList<Integer> result = new LinkedList<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      result.add(readInteger(in));
+    }
+    return result;
+  }
+
+}
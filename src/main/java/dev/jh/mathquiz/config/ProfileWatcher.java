@@ -0,0 +1,93 @@
+package dev.jh.mathquiz.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the properties file of a profile with a {@link WatchService} on its directory and calls a listener (on the
+ * watcher's own daemon thread) once the file was changed. Editors often write a file in several steps or replace it,
+ * so events are collected until the directory was quiet for a short delay, and the listener is called once for all.
+ */
+public class ProfileWatcher implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProfileWatcher.class);
+  private static final long SETTLE_DELAY_MILLIS = 200;
+
+  private final Path profilePath;
+  private final Path fileName;
+  private final Runnable listener;
+  private final WatchService watchService;
+  private final Thread thread;
+
+  public ProfileWatcher(Path profilePath, Runnable listener) throws IOException {
+    Path directory = profilePath.toAbsolutePath().getParent();
+    this.profilePath = profilePath;
+    this.fileName = profilePath.getFileName();
+    this.listener = listener;
+    this.watchService = directory.getFileSystem().newWatchService();
+    directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    this.thread = new Thread(this::watch, "profile-watcher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  public Path profilePath() {
+    return profilePath;
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        boolean changed = pollChanges(watchService.take());
+        WatchKey key;
+        while ((key = watchService.poll(SETTLE_DELAY_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+          changed |= pollChanges(key);
+        }
+        if (changed) {
+          notifyListener();
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      LOG.debug("Stopped watching profile '{}'", fileName);
+    } catch (IllegalStateException e) {
+      LOG.warn("Stopped watching profile '{}' ({})", fileName, e.getMessage());
+    }
+  }
+
+  private boolean pollChanges(WatchKey key) {
+    boolean result = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      // after an overflow, events were lost, so the file may have changed
+      result |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+    }
+    if (!key.reset()) {
+      throw new IllegalStateException("profile directory is no longer accessible");
+    }
+    return result;
+  }
+
+  private void notifyListener() {
+    try {
+      listener.run();
+    } catch (RuntimeException e) {
+      // a failing reload must not stop watching for the next change
+      LOG.error("Failed to handle change of profile '{}':", fileName, e);
+    }
+  }
+
+}
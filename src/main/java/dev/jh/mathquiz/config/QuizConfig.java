@@ -1,11 +1,27 @@
 package dev.jh.mathquiz.config;
 
+import dev.jh.mathquiz.validate.expression.EvaluationMode;
+
 import java.util.LinkedList;
 
 public record QuizConfig(
   Integer amount,
-  LinkedList<Integer> equationOrder
+  LinkedList<Integer> equationOrder,
+  Integer parallelism,
+  Long seed,
+  Boolean unique,
+  Integer uniqueMemoryBudget,
+  QuizRetryConfig retry,
+  QuizTimeoutConfig timeout,
+  EvaluationMode evaluation,
+  Integer resultCacheSize
 ) {
   public static final String AMOUNT = "quiz.amount";
   public static final String EQUATION_ORDER = "quiz.equation-order";
+  public static final String PARALLELISM = "quiz.parallelism";
+  public static final String SEED = "quiz.seed";
+  public static final String UNIQUE = "quiz.unique";
+  public static final String UNIQUE_MEMORY_BUDGET = "quiz.unique.memory-budget";
+  public static final String EVALUATION = "quiz.evaluation";
+  public static final String RESULT_CACHE_SIZE = "quiz.result-cache.size";
 }
@@ -0,0 +1,17 @@
+package dev.jh.mathquiz.config;
+
+import dev.jh.mathquiz.process.RetryPolicy;
+
+public record QuizRetryConfig(
+  RetryPolicy policy,
+  Integer quizAttempts,
+  Integer equationAttempts,
+  Integer attemptBudget,
+  Integer identicalRejections
+) {
+  public static final String POLICY = "quiz.retry.policy";
+  public static final String QUIZ_ATTEMPTS = "quiz.retry.quiz-attempts";
+  public static final String EQUATION_ATTEMPTS = "quiz.retry.equation-attempts";
+  public static final String ATTEMPT_BUDGET = "quiz.retry.attempt-budget";
+  public static final String IDENTICAL_REJECTIONS = "quiz.retry.identical-rejections";
+}
@@ -0,0 +1,9 @@
+package dev.jh.mathquiz.config;
+
+public record QuizTimeoutConfig(
+  Long run,
+  Long quiz
+) {
+  public static final String RUN = "quiz.timeout.run";
+  public static final String QUIZ = "quiz.timeout.quiz";
+}
@@ -0,0 +1,100 @@
+package dev.jh.mathquiz.process;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks the (operand sequence, variable combo) of an equation based on how often each choice passed validation so far
+ * in the run. Each choice is weighted by its estimated acceptance rate ({@code (accepted + 1) / (attempts + 2)}), but a
+ * fixed share of all picks stays uniform, so that no choice is ever ruled out completely. Counters are shared by all
+ * generation workers; the weights are recalculated after a number of attempts proportional to the amount of choices.
+ * <p>
+ * A choice packs the operand sequence (in the mixed radix of {@link EquationIndex#unpack}) and the combo index as
+ * {@code combo * operandSequences + operandSequence}.
+ */
+class AdaptiveSampler {
+
+  /**
+   * The maximum amount of choices an equation may have to be sampled adaptively.
+   */
+  static final int MAX_CHOICES = 1 << 16;
+
+  /**
+   * The share of picks that ignore the learned weights.
+   */
+  private static final double UNIFORM_SHARE = 0.1;
+  private static final int MIN_UPDATE_INTERVAL = 64;
+
+  private final int operandSequences;
+  private final int choices;
+  private final int updateInterval;
+  private final AtomicLongArray attempts;
+  private final AtomicLongArray accepted;
+  private final AtomicLong recorded = new AtomicLong();
+
+  // cumulative weights of all choices, null until the first update
+  private volatile double[] cumulativeWeights;
+
+  private AdaptiveSampler(int operandSequences, int choices) {
+    this.operandSequences = operandSequences;
+    this.choices = choices;
+    this.updateInterval = Math.max(MIN_UPDATE_INTERVAL, choices);
+    this.attempts = new AtomicLongArray(choices);
+    this.accepted = new AtomicLongArray(choices);
+  }
+
+  /**
+   * Creates a sampler for an equation, or returns null if the equation has too many choices to be sampled adaptively.
+   */
+  static AdaptiveSampler create(int slots, int operands, int combos) {
+    long operandSequences = 1;
+    for (int i = 0; i < slots - 1 && operandSequences <= MAX_CHOICES; i++) {
+      operandSequences *= operands;
+    }
+    long choices = operandSequences * combos;
+    if (choices > MAX_CHOICES) {
+      return null;
+    }
+    return new AdaptiveSampler((int) operandSequences, (int) choices);
+  }
+
+  int pick(RandomGenerator random) {
+    double[] weights = cumulativeWeights;
+    if (weights == null || random.nextDouble() < UNIFORM_SHARE) {
+      return random.nextInt(choices);
+    }
+    int position = Arrays.binarySearch(weights, random.nextDouble() * weights[choices - 1]);
+    return Math.min(choices - 1, position < 0 ? -position - 1 : position);
+  }
+
+  int operandSequence(int choice) {
+    return choice % operandSequences;
+  }
+
+  int combo(int choice) {
+    return choice / operandSequences;
+  }
+
+  void record(int choice, boolean passed) {
+    attempts.incrementAndGet(choice);
+    if (passed) {
+      accepted.incrementAndGet(choice);
+    }
+    if (recorded.incrementAndGet() % updateInterval == 0) {
+      updateWeights();
+    }
+  }
+
+  private void updateWeights() {
+    double[] weights = new double[choices];
+    double sum = 0;
+    for (int i = 0; i < choices; i++) {
+      sum += (accepted.get(i) + 1.0) / (attempts.get(i) + 2.0);
+      weights[i] = sum;
+    }
+    cumulativeWeights = weights;
+  }
+
+}
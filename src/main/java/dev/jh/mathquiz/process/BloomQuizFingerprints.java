@@ -0,0 +1,52 @@
+package dev.jh.mathquiz.process;
+
+/**
+ * Bloom filter over quiz fingerprints, using all of the given memory. Fingerprints are never missed, but with a small
+ * probability a fingerprint is reported as added before although it wasn't.
+ */
+class BloomQuizFingerprints implements QuizFingerprints {
+
+  private static final int MAX_HASHES = 16;
+
+  private final long[] bits;
+  private final long bitCount;
+  private final int hashes;
+  private final int expected;
+
+  BloomQuizFingerprints(int expected, long memoryBudget) {
+    int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, memoryBudget / Long.BYTES));
+    this.bits = new long[words];
+    this.bitCount = (long) words * Long.SIZE;
+    this.expected = Math.max(1, expected);
+    // optimal amount of hashes for the bits available per fingerprint
+    this.hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) bitCount / this.expected * Math.log(2))));
+  }
+
+  @Override
+  public boolean add(long fingerprint) {
+    // derive all bit positions from the two halves of the fingerprint (double hashing)
+    long h1 = fingerprint;
+    long h2 = Long.rotateLeft(fingerprint, 32) | 1;
+    boolean added = false;
+    for (int i = 0; i < hashes; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      if ((bits[word] & mask) == 0) {
+        bits[word] |= mask;
+        added = true;
+      }
+    }
+    return added;
+  }
+
+  @Override
+  public String describe() {
+    double falsePositiveRate = Math.pow(1 - Math.exp(-(double) hashes * expected / bitCount), hashes);
+    return String.format(
+      "a bloom filter of %d bits with %d hashes (false positive rate at %d quizzes: %.2e)",
+      bitCount, hashes, expected, falsePositiveRate
+    );
+  }
+
+}
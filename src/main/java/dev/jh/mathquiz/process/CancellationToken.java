@@ -0,0 +1,44 @@
+package dev.jh.mathquiz.process;
+
+import java.time.Duration;
+
+/**
+ * Signals quiz generation to stop, either when cancelled or once its deadline has passed. Generation checks the token
+ * between attempts, so it stops shortly after; quizzes generated until then are still returned.
+ */
+public class CancellationToken {
+
+  private final CancellationToken parent;
+  private final boolean hasDeadline;
+  private final long deadline;
+
+  private volatile boolean cancelled;
+
+  public CancellationToken() {
+    this(null, false, 0);
+  }
+
+  private CancellationToken(CancellationToken parent, boolean hasDeadline, long deadline) {
+    this.parent = parent;
+    this.hasDeadline = hasDeadline;
+    this.deadline = deadline;
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled
+      || hasDeadline && System.nanoTime() - deadline >= 0
+      || parent != null && parent.isCancelled();
+  }
+
+  /**
+   * Returns a token that is cancelled together with this one, or once the given time has passed.
+   */
+  public CancellationToken withTimeout(Duration timeout) {
+    return new CancellationToken(this, true, System.nanoTime() + timeout.toNanos());
+  }
+
+}
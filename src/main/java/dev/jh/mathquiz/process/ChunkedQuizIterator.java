@@ -0,0 +1,108 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.validate.expression.ExpressionNodeConverter;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates quizzes in chunks on a pool of workers and returns them in index order. Only a bounded window of chunks is
+ * generated ahead of the consumer, so memory use does not depend on the total amount of quizzes.
+ */
+class ChunkedQuizIterator implements Iterator<MathQuiz>, AutoCloseable {
+
+  private static final int CHUNKS_IN_FLIGHT_PER_WORKER = 2;
+
+  private final GenerationPlan plan;
+  private final GenerationStatistics statistics;
+  private final CancellationToken token;
+  private final int amount;
+  private final int chunkSize;
+  private final int chunksInFlight;
+  private final ExecutorService executor;
+  private final Deque<Future<List<MathQuiz>>> pendingChunks = new ArrayDeque<>();
+
+  private long nextChunkFrom = 1;
+  private Iterator<MathQuiz> currentChunk = Collections.emptyIterator();
+
+  ChunkedQuizIterator(
+    GenerationPlan plan, int parallelism, int chunkSize, GenerationStatistics statistics, CancellationToken token
+  ) {
+    this.plan = plan;
+    this.statistics = statistics;
+    this.token = token;
+    this.amount = plan.config().quiz().amount();
+    this.chunkSize = chunkSize;
+    this.chunksInFlight = parallelism * CHUNKS_IN_FLIGHT_PER_WORKER;
+    this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "quiz-generator");
+      thread.setDaemon(true);
+      return thread;
+    });
+    fillPendingChunks();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!currentChunk.hasNext()) {
+      if (pendingChunks.isEmpty()) {
+        return false;
+      }
+      currentChunk = awaitChunk(pendingChunks.poll()).iterator();
+      fillPendingChunks();
+    }
+    return true;
+  }
+
+  @Override
+  public MathQuiz next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return currentChunk.next();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void fillPendingChunks() {
+    while (pendingChunks.size() < chunksInFlight && nextChunkFrom <= amount && !token.isCancelled()) {
+      int from = (int) nextChunkFrom;
+      int to = (int) Math.min(amount, nextChunkFrom + chunkSize - 1);
+      // each chunk gets its own generator, so that no generation state (apart from the thread-safe statistics and the
+      // immutable plan) is shared between workers
+      pendingChunks.add(executor.submit(
+        () -> new MathQuizGenerator(new ExpressionNodeConverter(), statistics, plan)
+          .generateQuizzes(plan.config(), from, to, token)
+      ));
+      nextChunkFrom = to + 1L;
+      if (to == amount) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  private List<MathQuiz> awaitChunk(Future<List<MathQuiz>> chunk) {
+    try {
+      return chunk.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new IllegalStateException("Interrupted while generating quizzes", e);
+    } catch (ExecutionException e) {
+      close();
+      throw new IllegalStateException("Failed to generate quizzes", e.getCause());
+    }
+  }
+
+}
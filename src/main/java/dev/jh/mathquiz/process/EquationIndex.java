@@ -0,0 +1,141 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.config.VariableConfig;
+import dev.jh.mathquiz.validate.expression.ExpressionNodeConverter;
+import dev.jh.mathquiz.validate.expression.ExpressionTerm;
+import dev.jh.mathquiz.validate.expression.InvalidExpressionException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Index of all valid operand sequences of an equation, keyed by the values and mutations in its slots. Whether an
+ * equation passes validation only depends on these, so the operand sequences are enumerated and validated once per key
+ * (on first use, as the slot values depend on the variables of each quiz) and stored as packed {@code int}s. Picking
+ * an equation for known slots then is a single lookup, without any rejected attempts.
+ * <p>
+ * A slot key combines the index of the slot value within the value span of all variables and the slot's mutation
+ * state: 0 if it is not mutated, otherwise the amplifier value relative to the amplifier minimum, plus one. An
+ * operand sequence is packed as the operand positions within the plan's operands, in mixed radix.
+ */
+class EquationIndex {
+
+  /**
+   * The maximum amount of keys an index may have, bounding its memory use.
+   */
+  static final int MAX_KEYS = 1 << 18;
+
+  /**
+   * The maximum amount of operand sequences to enumerate per key.
+   */
+  static final int MAX_OPERAND_SEQUENCES = 1 << 12;
+
+  private static final int[] NONE = new int[0];
+
+  private final ExpressionNodeConverter expressionNodeConverter;
+  private final long minValue;
+  private final int valueSpan;
+  private final int mutationStates;
+  private final int operandSequences;
+  private final AtomicReferenceArray<int[]> entries;
+
+  private EquationIndex(
+    ExpressionNodeConverter expressionNodeConverter, long minValue, int valueSpan, int mutationStates, int keys,
+    int operandSequences
+  ) {
+    this.expressionNodeConverter = expressionNodeConverter;
+    this.minValue = minValue;
+    this.valueSpan = valueSpan;
+    this.mutationStates = mutationStates;
+    this.operandSequences = operandSequences;
+    this.entries = new AtomicReferenceArray<>(keys);
+  }
+
+  /**
+   * Creates an (empty) index for an equation, or returns null if the equation has too many slot keys or operand
+   * sequences to be indexed.
+   */
+  static EquationIndex create(
+    int slots, int operands, boolean mutationEnabled, int amplifierMin, int amplifierMax,
+    List<VariableConfig> variables, ExpressionNodeConverter expressionNodeConverter
+  ) {
+    long minValue = variables.stream().mapToLong(v -> v.range().min().intValue()).min().orElse(0);
+    long maxValue = variables.stream().mapToLong(v -> v.range().max().intValue()).max().orElse(0);
+    long valueSpan = maxValue - minValue + 1;
+    long mutationStates = mutationEnabled ? 2L + amplifierMax - amplifierMin : 1;
+
+    long keys = power(valueSpan * mutationStates, slots);
+    long operandSequences = power(operands, slots - 1);
+    if (keys > MAX_KEYS || operandSequences > MAX_OPERAND_SEQUENCES) {
+      return null;
+    }
+    return new EquationIndex(
+      expressionNodeConverter, minValue, (int) valueSpan, (int) mutationStates, (int) keys, (int) operandSequences
+    );
+  }
+
+  int key(BigDecimal[] slotValues, int[] mutationStates) {
+    int key = 0;
+    for (int i = slotValues.length - 1; i >= 0; i--) {
+      int valueIndex = (int) (slotValues[i].longValueExact() - minValue);
+      key = key * valueSpan * this.mutationStates + valueIndex * this.mutationStates + mutationStates[i];
+    }
+    return key;
+  }
+
+  /**
+   * Returns the packed operand sequences that pass validation for the given slots, enumerating them on first use.
+   */
+  int[] entries(int key, List<ExpressionTerm> slotTerms, BigDecimal[] slotValues, EquationPlan plan) {
+    int[] result = entries.get(key);
+    if (result == null) {
+      result = enumerate(slotTerms, slotValues, plan);
+      // concurrent enumerations of the same key are identical, so whichever is stored first is kept
+      entries.compareAndSet(key, null, result);
+    }
+    return result;
+  }
+
+  /**
+   * Unpacks an operand sequence into the given array.
+   */
+  static void unpack(int entry, Operand[] operands, Operand[] result) {
+    int rest = entry;
+    for (int i = 0; i < result.length; i++) {
+      result[i] = operands[rest % operands.length];
+      rest /= operands.length;
+    }
+  }
+
+  private int[] enumerate(List<ExpressionTerm> slotTerms, BigDecimal[] slotValues, EquationPlan plan) {
+    Operand[] sequence = new Operand[slotTerms.size() - 1];
+    List<Operand> sequenceList = Arrays.asList(sequence);
+    List<Integer> valid = new ArrayList<>();
+    for (int entry = 0; entry < operandSequences; entry++) {
+      unpack(entry, plan.operands(), sequence);
+      ExpressionTerm expression = expressionNodeConverter.toExpressionTerm(slotTerms, sequenceList);
+      try {
+        plan.validator().solveAndValidate(expression, slotValues);
+        valid.add(entry);
+      } catch (InvalidExpressionException e) {
+        // operand sequence is not valid for these slots
+      }
+    }
+    return valid.isEmpty() ? NONE : valid.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static long power(long base, int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      if (base != 0 && result > Long.MAX_VALUE / base) {
+        return Long.MAX_VALUE;
+      }
+      result *= base;
+    }
+    return result;
+  }
+
+}
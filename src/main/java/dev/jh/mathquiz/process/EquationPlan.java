@@ -0,0 +1,167 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.config.EquationConfig;
+import dev.jh.mathquiz.config.EquationMutationConfig;
+import dev.jh.mathquiz.config.VariableConfig;
+import dev.jh.mathquiz.validate.expression.ArithmeticEvaluator;
+import dev.jh.mathquiz.validate.expression.ConstantTerm;
+import dev.jh.mathquiz.validate.expression.ExpressionNodeConverter;
+import dev.jh.mathquiz.validate.expression.ExpressionTerm;
+import dev.jh.mathquiz.validate.expression.ExpressionValidator;
+import dev.jh.mathquiz.validate.expression.OperationTerm;
+import dev.jh.mathquiz.validate.expression.ResultCache;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * An equation config compiled into the form the generator works with: variables are referenced by their index in the
+ * config's variable list, combos are resolved to index arrays and the validator is configured once. Plans are never
+ * modified after compiling (apart from the thread-safe state of their index or adaptive sampler), so a single plan can
+ * be shared by all generation workers.
+ *
+ * @param slots              the amount of variable slots of the equation
+ * @param comboVariables     per combo, the variables it requires (in combo order, at most {@code slots})
+ * @param allowedVariables   per combo, the variables it allows (in config order)
+ * @param mutationAffected   per variable, whether it may be mutated
+ * @param mutationChance     the mutation chance in percent
+ * @param mutationMultiplier the multiplier applied to mutated terms, or null if mutations don't multiply
+ * @param index              the index of valid operand sequences, or null if the equation isn't enumerated
+ * @param adaptiveSampler    the sampler of operands and combos, or null if the equation isn't sampled adaptively
+ */
+record EquationPlan(
+  EquationConfig config,
+  int slots,
+  Operand[] operands,
+  List<Operand> distinctOperands,
+  int[][] comboVariables,
+  int[][] allowedVariables,
+  boolean mutationEnabled,
+  boolean[] mutationAffected,
+  float mutationChance,
+  ConstantTerm mutationMultiplier,
+  int amplifierMin,
+  int amplifierMax,
+  boolean hideSolution,
+  ExpressionValidator validator,
+  EquationIndex index,
+  AdaptiveSampler adaptiveSampler
+) {
+
+  private static final BigDecimal QUARTER = new BigDecimal("0.25");
+  private static final BigDecimal HALF = new BigDecimal("0.5");
+
+  static EquationPlan compile(
+    EquationConfig config, List<VariableConfig> variables, ArithmeticEvaluator evaluator, ResultCache resultCache,
+    ExpressionNodeConverter expressionNodeConverter, boolean seeded
+  ) {
+    int slots = config.variables().amount();
+
+    Map<String, Integer> indexByIdentifier = new HashMap<>();
+    for (int i = 0; i < variables.size(); i++) {
+      indexByIdentifier.putIfAbsent(variables.get(i).identifier(), i);
+    }
+
+    List<List<String>> combos = config.variables().combos();
+    int[][] comboVariables = new int[combos.size()][];
+    int[][] allowedVariables = new int[combos.size()][];
+    for (int c = 0; c < combos.size(); c++) {
+      List<String> combo = combos.get(c);
+      comboVariables[c] = combo.stream()
+        .filter(indexByIdentifier::containsKey)
+        .limit(slots)
+        .mapToInt(indexByIdentifier::get)
+        .toArray();
+      allowedVariables[c] = IntStream.range(0, variables.size())
+        .filter(i -> combo.contains(variables.get(i).identifier()))
+        .toArray();
+    }
+
+    // mutation values are only set (and validated) if mutation is enabled
+    EquationMutationConfig mutation = config.mutation();
+    boolean mutationEnabled = Boolean.TRUE.equals(mutation.enabled());
+    boolean[] mutationAffected = new boolean[variables.size()];
+    if (mutationEnabled && mutation.affectedVariables() != null) {
+      for (int i = 0; i < variables.size(); i++) {
+        mutationAffected[i] = mutation.affectedVariables().contains(variables.get(i).identifier());
+      }
+    }
+    ConstantTerm mutationMultiplier = null;
+    if (mutationEnabled && (mutation.multiplier().equals(QUARTER) || mutation.multiplier().equals(HALF))) {
+      mutationMultiplier = new ConstantTerm(mutation.multiplier());
+    }
+
+    ExpressionValidator validator = new ExpressionValidator(expressionNodeConverter)
+      .evaluateWith(evaluator)
+      .cacheResultsIn(resultCache)
+      .keepWithinSolutionRange(config.solution().range())
+      .prohibitSelfDivision(Boolean.TRUE.equals(config.validate().selfDivision()))
+      .prohibitSelfSubtraction(Boolean.TRUE.equals(config.validate().selfSubtraction()))
+      .prohibitNegativeResults(Boolean.TRUE.equals(config.validate().negativeResults()))
+      .prohibitDecimalResults(Boolean.TRUE.equals(config.validate().decimalResults()))
+      .prohibitDecimalSolution(Boolean.TRUE.equals(config.validate().decimalSolution()));
+
+    int amplifierMin = mutationEnabled ? mutation.amplifier().min().intValue() : 1;
+    int amplifierMax = mutationEnabled ? mutation.amplifier().max().intValue() : 1;
+    EquationIndex index = null;
+    if (config.strategy() == EquationStrategy.ENUMERATED) {
+      index = EquationIndex.create(
+        slots, config.operands().size(), mutationEnabled, amplifierMin, amplifierMax, variables, expressionNodeConverter
+      );
+    }
+    AdaptiveSampler adaptiveSampler = null;
+    // learned weights would make a seeded quiz depend on all quizzes generated before it, not only on seed and index
+    if (config.strategy() == EquationStrategy.ADAPTIVE && !seeded) {
+      adaptiveSampler = AdaptiveSampler.create(slots, config.operands().size(), combos.size());
+    }
+
+    return new EquationPlan(
+      config,
+      slots,
+      config.operands().toArray(new Operand[0]),
+      config.operands().stream().distinct().toList(),
+      comboVariables,
+      allowedVariables,
+      mutationEnabled,
+      mutationAffected,
+      mutationEnabled ? mutation.chance().floatValue() * 100 : 0,
+      mutationMultiplier,
+      amplifierMin,
+      amplifierMax,
+      Boolean.TRUE.equals(config.solution().hide()),
+      validator,
+      index,
+      adaptiveSampler
+    );
+  }
+
+  /**
+   * Mutates a term with the given amplifier value (and the plan's multiplier, if any).
+   */
+  ExpressionTerm mutate(ExpressionTerm term, int amplifier) {
+    ExpressionTerm multipliedTerm;
+    ExpressionTerm amplifiedTerm;
+
+    // apply multiplier
+    if (mutationMultiplier != null) {
+      multipliedTerm = new OperationTerm(Operand.MULTIPLICATION, List.of(term, mutationMultiplier), true);
+    } else {
+      multipliedTerm = term;
+    }
+
+    // apply amplifier
+    if (amplifier != 1) {
+      amplifiedTerm = new OperationTerm(
+        Operand.MULTIPLICATION, List.of(new ConstantTerm(BigDecimal.valueOf(amplifier)), multipliedTerm), true
+      );
+    } else {
+      amplifiedTerm = multipliedTerm;
+    }
+
+    return amplifiedTerm;
+  }
+
+}
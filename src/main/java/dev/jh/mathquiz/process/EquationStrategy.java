@@ -0,0 +1,32 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.util.StringUtil;
+
+import java.util.Arrays;
+
+public enum EquationStrategy {
+
+  RANDOM("random"),
+  CONSTRUCTIVE("constructive"),
+  ENUMERATED("enumerated"),
+  ADAPTIVE("adaptive"),
+  BATCHED("batched");
+
+  private final String text;
+
+  EquationStrategy(String text) {
+    this.text = text;
+  }
+
+  public String text() {
+    return text;
+  }
+
+  public static EquationStrategy byText(String text) {
+    if (StringUtil.hasNoContent(text)) {
+      return null;
+    }
+    return Arrays.stream(EquationStrategy.values()).filter(s -> text.equals(s.text())).findFirst().orElse(null);
+  }
+
+}
@@ -0,0 +1,51 @@
+package dev.jh.mathquiz.process;
+
+/**
+ * Exact fingerprint set, using open addressing with linear probing over a {@code long[]} that is kept at most half
+ * full. Fingerprint 0 marks empty entries, so it is stored as 1 instead.
+ */
+class ExactQuizFingerprints implements QuizFingerprints {
+
+  private final long[] entries;
+  private final int mask;
+
+  private static final long MAX_CAPACITY = 1L << 30;
+
+  ExactQuizFingerprints(int expected) {
+    entries = new long[(int) capacity(expected)];
+    mask = entries.length - 1;
+  }
+
+  /**
+   * Returns the memory a set for the expected amount of fingerprints needs, or {@link Long#MAX_VALUE} if such a set
+   * can't be created at all.
+   */
+  static long requiredMemory(int expected) {
+    long capacity = capacity(expected);
+    return capacity > MAX_CAPACITY ? Long.MAX_VALUE : capacity * Long.BYTES;
+  }
+
+  @Override
+  public boolean add(long fingerprint) {
+    long entry = fingerprint == 0 ? 1 : fingerprint;
+    int index = (int) (entry ^ (entry >>> 32)) & mask;
+    while (entries[index] != 0) {
+      if (entries[index] == entry) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+    entries[index] = entry;
+    return true;
+  }
+
+  @Override
+  public String describe() {
+    return String.format("an exact set of %d entries", entries.length);
+  }
+
+  private static long capacity(int expected) {
+    return Long.highestOneBit(Math.max(2L, expected) * 2 - 1) << 1;
+  }
+
+}
@@ -0,0 +1,63 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.config.Config;
+import dev.jh.mathquiz.config.EquationConfig;
+import dev.jh.mathquiz.validate.expression.ArithmeticEvaluator;
+import dev.jh.mathquiz.validate.expression.ExpressionNodeConverter;
+import dev.jh.mathquiz.validate.expression.ResultCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the generator derives from a config before generating quizzes: the variable sampler, one compiled
+ * {@link EquationPlan} per equation (in config order), the retry limits and the result cache shared by the validators
+ * of all equations (null if the config doesn't enable it). Compiled once per run and shared by all generation workers.
+ */
+record GenerationPlan(
+  Config config,
+  VariableSampler variableSampler,
+  List<EquationPlan> equations,
+  RetryLimits retryLimits,
+  ResultCache resultCache
+) {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GenerationPlan.class);
+
+  static GenerationPlan compile(Config config, ExpressionNodeConverter expressionNodeConverter) {
+    List<EquationPlan> equations = new ArrayList<>(config.equations().size());
+    ArithmeticEvaluator evaluator = ArithmeticEvaluator.of(config.quiz().evaluation());
+    Integer resultCacheSize = config.quiz().resultCacheSize();
+    ResultCache resultCache = resultCacheSize == null || resultCacheSize == 0 ? null : new ResultCache(resultCacheSize);
+    boolean seeded = config.quiz().seed() != null;
+    for (EquationConfig equation : config.equations()) {
+      EquationPlan plan = EquationPlan.compile(
+        equation, config.variables(), evaluator, resultCache, expressionNodeConverter, seeded
+      );
+      if (seeded && equation.strategy() == EquationStrategy.ADAPTIVE) {
+        LOG.warn(
+          "Equation #{} uses strategy '{}', which doesn't apply to seeded runs (quizzes would depend on all quizzes "
+            + "generated before them), falling back to random sampling",
+          equations.size() + 1, equation.strategy().text()
+        );
+      }
+      boolean unsupported = equation.strategy() == EquationStrategy.ENUMERATED && plan.index() == null
+        || equation.strategy() == EquationStrategy.ADAPTIVE && !seeded && plan.adaptiveSampler() == null;
+      if (unsupported) {
+        LOG.warn(
+          "Equation #{} has too many possible equations for strategy '{}', falling back to random sampling",
+          equations.size() + 1, equation.strategy().text()
+        );
+      }
+      equations.add(plan);
+    }
+    return new GenerationPlan(
+      config, new VariableSampler(config.variables()), Collections.unmodifiableList(equations),
+      RetryLimits.of(config.quiz()), resultCache
+    );
+  }
+
+}
@@ -0,0 +1,176 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.validate.expression.RejectionReason;
+import dev.jh.mathquiz.validate.expression.ResultCache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts quiz and equation attempts of a generator, including the reason each rejected equation attempt failed, and
+ * keeps track of the result cache of the current run (if any). Counters can be updated by multiple generation workers
+ * at the same time.
+ */
+public class GenerationStatistics {
+
+  private final LongAdder quizAttempts = new LongAdder();
+  private final LongAdder quizzesGenerated = new LongAdder();
+  private final LongAdder quizzesFailed = new LongAdder();
+  private final LongAdder duplicatesRejected = new LongAdder();
+  private final Map<Integer, EquationStatistics> equations = new ConcurrentHashMap<>();
+  private volatile ResultCache resultCache;
+
+  public long quizAttempts() {
+    return quizAttempts.sum();
+  }
+
+  public long quizzesGenerated() {
+    return quizzesGenerated.sum();
+  }
+
+  public long quizzesFailed() {
+    return quizzesFailed.sum();
+  }
+
+  /**
+   * Returns how many generated quizzes were rejected as duplicates of an earlier quiz of the run.
+   */
+  public long duplicatesRejected() {
+    return duplicatesRejected.sum();
+  }
+
+  /**
+   * Returns the statistics of all equations with at least one attempt, by (1-based) equation index.
+   */
+  public NavigableMap<Integer, EquationStatistics> equations() {
+    return Collections.unmodifiableNavigableMap(new TreeMap<>(equations));
+  }
+
+  /**
+   * Returns the result cache of the current run, which counts its own hits and misses, or null if there is none.
+   */
+  public ResultCache resultCache() {
+    return resultCache;
+  }
+
+  public void reset() {
+    quizAttempts.reset();
+    quizzesGenerated.reset();
+    quizzesFailed.reset();
+    duplicatesRejected.reset();
+    equations.clear();
+    ResultCache cache = resultCache;
+    if (cache != null) {
+      cache.resetCounters();
+    }
+  }
+
+  void recordQuiz(int attempts, boolean generated) {
+    quizAttempts.add(attempts);
+    (generated ? quizzesGenerated : quizzesFailed).increment();
+  }
+
+  void trackResultCache(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  void recordDuplicate() {
+    duplicatesRejected.increment();
+  }
+
+  EquationStatistics equation(int index) {
+    return equations.computeIfAbsent(index, i -> new EquationStatistics());
+  }
+
+  public static class EquationStatistics {
+
+    /**
+     * Upper bounds (inclusive) of the attempt histogram buckets: 1, 2, 3-4, 5-8, ... attempts.
+     */
+    private static final int[] HISTOGRAM_BOUNDS = {1, 2, 4, 8, 16, 32, 64, Integer.MAX_VALUE};
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder[] rejections = newAdders(RejectionReason.values().length);
+    private final LongAdder[] attemptHistogram = newAdders(HISTOGRAM_BOUNDS.length);
+
+    public long attempts() {
+      return attempts.sum();
+    }
+
+    public long accepted() {
+      return accepted.sum();
+    }
+
+    /**
+     * Returns how often the equation could not be generated at all (all attempts were rejected).
+     */
+    public long failed() {
+      return failed.sum();
+    }
+
+    public double acceptanceRate() {
+      long attemptsSum = attempts.sum();
+      return attemptsSum == 0 ? 0 : (double) accepted.sum() / attemptsSum;
+    }
+
+    public long rejections(RejectionReason reason) {
+      return rejections[reason.ordinal()].sum();
+    }
+
+    /**
+     * Returns how many accepted equations took how many attempts, keyed by the bucket label (e.g. "3-4").
+     */
+    public Map<String, Long> attemptHistogram() {
+      Map<String, Long> result = new LinkedHashMap<>();
+      for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++) {
+        int lower = i == 0 ? 1 : HISTOGRAM_BOUNDS[i - 1] + 1;
+        int upper = HISTOGRAM_BOUNDS[i];
+        String label;
+        if (upper == Integer.MAX_VALUE) {
+          label = lower + "+";
+        } else {
+          label = lower == upper ? String.valueOf(upper) : lower + "-" + upper;
+        }
+        result.put(label, attemptHistogram[i].sum());
+      }
+      return result;
+    }
+
+    void recordRejection(RejectionReason reason) {
+      attempts.increment();
+      rejections[reason.ordinal()].increment();
+    }
+
+    void recordAccepted(int attempts) {
+      this.attempts.increment();
+      accepted.increment();
+      for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++) {
+        if (attempts <= HISTOGRAM_BOUNDS[i]) {
+          attemptHistogram[i].increment();
+          break;
+        }
+      }
+    }
+
+    void recordFailed() {
+      failed.increment();
+    }
+
+    private static LongAdder[] newAdders(int size) {
+      LongAdder[] result = new LongAdder[size];
+      for (int i = 0; i < size; i++) {
+        result[i] = new LongAdder();
+      }
+      return result;
+    }
+
+  }
+
+}
@@ -1,257 +1,719 @@
 package dev.jh.mathquiz.process;
 
 import dev.jh.mathquiz.config.Config;
-import dev.jh.mathquiz.config.EquationConfig;
-import dev.jh.mathquiz.config.VariableConfig;
 import dev.jh.mathquiz.util.NumberUtil;
 import dev.jh.mathquiz.util.constant.Symbols;
 import dev.jh.mathquiz.util.type.Pair;
-import dev.jh.mathquiz.util.type.Range;
+import dev.jh.mathquiz.validate.expression.ConstantTerm;
 import dev.jh.mathquiz.validate.expression.ExpressionNodeConverter;
+import dev.jh.mathquiz.validate.expression.ExpressionTerm;
 import dev.jh.mathquiz.validate.expression.ExpressionValidator;
 import dev.jh.mathquiz.validate.expression.InvalidExpressionException;
+import dev.jh.mathquiz.validate.expression.RejectionReason;
+import dev.jh.mathquiz.validate.expression.SlotTerm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MathQuizGenerator {
 
   private static final Logger LOG = LoggerFactory.getLogger(MathQuizGenerator.class);
 
-  private static final int QUIZ_ATTEMPTS_BEFORE_EXCEPTION = 100;
-  private static final int EQUATION_ATTEMPTS_BEFORE_EXCEPTION = 100;
-  private static final int VARIABLE_ATTEMPTS_BEFORE_EXCEPTION = 100;
+  private static final int CHUNKS_PER_WORKER = 4;
+  private static final int MIN_CHUNK_SIZE = 64;
+  private static final int MAX_CHUNK_SIZE = 1024;
+  private static final int DEFAULT_UNIQUE_MEMORY_BUDGET = 64;
+  private static final int MAX_BATCH_ROWS = 4096;
 
   private final ExpressionNodeConverter expressionNodeConverter;
+  private final GenerationStatistics statistics;
+
+  private volatile GenerationPlan plan;
+  private volatile GenerationPlan preparedPlan;
 
   public MathQuizGenerator(ExpressionNodeConverter expressionNodeConverter) {
+    this(expressionNodeConverter, new GenerationStatistics());
+  }
+
+  MathQuizGenerator(ExpressionNodeConverter expressionNodeConverter, GenerationStatistics statistics) {
     this.expressionNodeConverter = expressionNodeConverter;
+    this.statistics = statistics;
+  }
+
+  MathQuizGenerator(
+    ExpressionNodeConverter expressionNodeConverter, GenerationStatistics statistics, GenerationPlan plan
+  ) {
+    this(expressionNodeConverter, statistics);
+    this.plan = plan;
+  }
+
+  /**
+   * Returns the attempt and rejection counters of all quizzes generated by this generator (including its workers).
+   */
+  public GenerationStatistics statistics() {
+    return statistics;
   }
 
   public List<MathQuiz> generateQuizzes(Config config) {
-    List<MathQuiz> result = new ArrayList<>();
-    for (int i = 1; i <= config.quiz().amount(); i++) {
-      int attempt = 1;
-      MathQuiz quiz = null;
-      while (attempt < QUIZ_ATTEMPTS_BEFORE_EXCEPTION) {
-        quiz = generateQuiz(config);
-        if (quiz != null) {
-          break;
-        }
-        attempt++;
-      }
+    return generateQuizzes(config, new CancellationToken());
+  }
+
+  /**
+   * Generates the quizzes of a run until all are generated, the token is cancelled or the run timeout has passed.
+   */
+  public List<MathQuiz> generateQuizzes(Config config, CancellationToken token) {
+    try (Stream<MathQuiz> quizzes = streamQuizzes(config, token)) {
+      return quizzes.toList();
+    }
+  }
+
+  public Stream<MathQuiz> streamQuizzes(Config config) {
+    return streamQuizzes(config, new CancellationToken());
+  }
+
+  /**
+   * Lazily generates the quizzes of a run in index order. Quizzes are only generated as the stream is consumed (ahead
+   * by a bounded amount of chunks when generating in parallel), so the stream should be closed once it's no longer
+   * needed. The stream ends early once the token is cancelled or the run timeout has passed.
+   */
+  public Stream<MathQuiz> streamQuizzes(Config config, CancellationToken token) {
+    CancellationToken runToken = config.quiz().timeout().run() == null
+      ? token
+      : token.withTimeout(Duration.ofMillis(config.quiz().timeout().run()));
+    Stream<MathQuiz> result = streamGeneratedQuizzes(config, runToken);
+    if (Boolean.TRUE.equals(config.quiz().unique())) {
+      // once no unique quiz can be found anymore, the remaining quizzes would most likely be duplicates as well
+      result = result.map(new UniqueQuizFilter(config, runToken)).takeWhile(Objects::nonNull);
+    }
+    return result;
+  }
+
+  private Stream<MathQuiz> streamGeneratedQuizzes(Config config, CancellationToken token) {
+    int amount = config.quiz().amount();
+    int parallelism = config.quiz().parallelism() == null ? 1 : config.quiz().parallelism();
+    if (parallelism <= 1 || amount <= MIN_CHUNK_SIZE) {
+      return IntStream.rangeClosed(1, amount)
+        .takeWhile(index -> !token.isCancelled())
+        .mapToObj(index -> generateQuiz(config, index, token))
+        .filter(Objects::nonNull);
+    }
+
+    // split into more chunks than workers, so that workers finishing early can pick up remaining chunks
+    int chunks = parallelism * CHUNKS_PER_WORKER;
+    int chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, (amount + chunks - 1) / chunks));
+    LOG.info("Generating quizzes with {} workers in chunks of {}", parallelism, chunkSize);
+
+    ChunkedQuizIterator iterator = new ChunkedQuizIterator(plan(config), parallelism, chunkSize, statistics, token);
+    return StreamSupport
+      .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+      .onClose(iterator::close);
+  }
+
+  List<MathQuiz> generateQuizzes(Config config, int from, int to, CancellationToken token) {
+    List<MathQuiz> result = new ArrayList<>(to - from + 1);
+    for (int i = from; i <= to && !token.isCancelled(); i++) {
+      MathQuiz quiz = generateQuiz(config, i, token);
       if (quiz != null) {
         result.add(quiz);
-      } else {
-        LOG.warn(
-          "Failed to generate quiz #{} of {} after {} attempts",
-          i, config.quiz().amount(), QUIZ_ATTEMPTS_BEFORE_EXCEPTION
-        );
       }
     }
     return result;
   }
 
-  public MathQuiz generateQuiz(Config config) {
-    List<Variable> variables = generateVariables(config.variables());
+  public MathQuiz generateQuiz(Config config, int index) {
+    return generateQuiz(config, index, new CancellationToken());
+  }
+
+  /**
+   * Generates the quiz with the given (1-based) index of a run. If the config has a seed set, the quiz only depends on
+   * the seed and the index, so any single quiz of a seeded run can be regenerated directly. Returns null if the quiz
+   * could not be generated within the retry limits and timeout, or if the token was cancelled.
+   */
+  public MathQuiz generateQuiz(Config config, int index, CancellationToken token) {
+    RandomGenerator random = config.quiz().seed() == null
+      ? ThreadLocalRandom.current()
+      : NumberUtil.seededRandom(config.quiz().seed(), index);
+    GenerationPlan plan = plan(config);
+    RetryLimits limits = plan.retryLimits();
+    QuizAttempts attempts = new QuizAttempts(
+      limits, limits.quizTimeout() == null ? token : token.withTimeout(limits.quizTimeout())
+    );
+
+    int attempt = 1;
+    while (attempts.canAttemptQuiz(attempt)) {
+      MathQuiz quiz = generateQuiz(plan, random, attempts);
+      if (quiz != null) {
+        statistics.recordQuiz(attempt, true);
+        return quiz;
+      }
+      attempt++;
+    }
+    if (token.isCancelled()) {
+      // not a failure of the quiz itself, so it's not counted
+      LOG.debug("Stopped generating quiz #{} of {} (generation was cancelled)", index, config.quiz().amount());
+      return null;
+    }
+    // the attempt counter was advanced past the last attempt made
+    int attemptsMade = attempt - 1;
+    statistics.recordQuiz(attemptsMade, false);
+    if (attempts.isStopped()) {
+      LOG.warn(
+        "Failed to generate quiz #{} of {} within its timeout or attempt budget", index, config.quiz().amount()
+      );
+    } else {
+      LOG.warn("Failed to generate quiz #{} of {} after {} attempts", index, config.quiz().amount(), attemptsMade);
+    }
+    return null;
+  }
+
+  private MathQuiz generateQuiz(GenerationPlan plan, RandomGenerator random, QuizAttempts attempts) {
+    List<Variable> variables = plan.variableSampler().sample(random);
     if (variables.isEmpty()) {
       return null;
     }
-    LinkedList<Pair<String, String>> equations = generateEquations(variables, config.equations());
-    return equations.isEmpty() ? null : new MathQuiz(variables, equations);
+    LinkedList<Pair<String, String>> equations = generateEquations(variables, plan.equations(), random, attempts);
+    // a quiz that had to stop midway would be missing equations, so it's dropped
+    return equations.isEmpty() || attempts.isStopped() ? null : new MathQuiz(variables, equations);
   }
 
-  private List<Variable> generateVariables(List<VariableConfig> configs) {
-    List<Variable> result = new ArrayList<>();
-    for (int i = 1; i <= configs.size(); i++) {
-      VariableConfig config = configs.get(i - 1);
-      int attempt = 1;
-      Variable generatedVariable = null;
-      while (attempt < VARIABLE_ATTEMPTS_BEFORE_EXCEPTION) {
-        BigDecimal value = new BigDecimal(NumberUtil.randomInt(
-          config.range().min().intValue(), config.range().max().intValue()
-        ));
-        boolean valueTaken = false;
-        for (Variable variable : result) {
-          if (variable.value().compareTo(value) == 0) {
-            valueTaken = true;
-            break;
-          }
-        }
-        if (!valueTaken) {
-          generatedVariable = new Variable(config.identifier(), value);
-          break;
-        } else {
-          attempt++;
-        }
-      }
-      if (generatedVariable != null) {
-        result.add(generatedVariable);
-      } else {
-        LOG.warn("Failed to generate variable after {} attempts", VARIABLE_ATTEMPTS_BEFORE_EXCEPTION);
-      }
+  /**
+   * Compiles the plan of a config ahead of its first run, e.g. while quizzes of another config are still generated.
+   * The plan of the current config is kept until the prepared one is used, so runs in flight are not affected.
+   */
+  public void prepare(Config config) {
+    preparedPlan = GenerationPlan.compile(config, expressionNodeConverter);
+  }
+
+  /**
+   * Returns the compiled plan of the given config, compiling it only if the config differs from the last one and
+   * wasn't prepared.
+   */
+  private GenerationPlan plan(Config config) {
+    GenerationPlan result = plan;
+    if (result == null || result.config() != config) {
+      GenerationPlan prepared = preparedPlan;
+      result = prepared != null && prepared.config() == config
+        ? prepared
+        : GenerationPlan.compile(config, expressionNodeConverter);
+      plan = result;
+      statistics.trackResultCache(result.resultCache());
     }
     return result;
   }
 
   private LinkedList<Pair<String, String>> generateEquations(
-    List<Variable> variables, LinkedList<EquationConfig> configs
+    List<Variable> variables, List<EquationPlan> plans, RandomGenerator random, QuizAttempts attempts
   ) {
     LinkedList<Pair<String, String>> result = new LinkedList<>();
-    for (int i = 1; i <= configs.size(); i++) {
+    for (int i = 1; i <= plans.size(); i++) {
+      GenerationStatistics.EquationStatistics equationStatistics = statistics.equation(i);
       int attempt = 1;
+      RejectionReason lastReason = null;
+      int identicalRejections = 0;
       Pair<String, String> equations = null;
-      while (attempt < EQUATION_ATTEMPTS_BEFORE_EXCEPTION) {
+      while (attempts.canAttemptEquation(attempt, identicalRejections)) {
+        attempts.recordEquationAttempt();
+        RejectionReason reason;
         try {
-          equations = generateEquation(variables, configs.get(i - 1));
+          equations = generateEquation(variables, plans.get(i - 1), random);
+          equationStatistics.recordAccepted(attempt);
           break;
-        } catch (InvalidExpressionException | IllegalStateException e) {
-          attempt++;
+        } catch (InvalidExpressionException e) {
+          reason = e.reason();
+        } catch (IllegalStateException e) {
+          reason = RejectionReason.ILLEGAL_STATE;
         }
+        equationStatistics.recordRejection(reason);
+        identicalRejections = reason == lastReason ? identicalRejections + 1 : 1;
+        lastReason = reason;
+        attempt++;
       }
       if (equations != null) {
         result.add(equations);
+      } else if (attempts.isStopped()) {
+        // no point in trying the remaining equations
+        break;
       } else {
-        LOG.warn("Failed to generate equation after {} attempts", EQUATION_ATTEMPTS_BEFORE_EXCEPTION);
+        equationStatistics.recordFailed();
+        LOG.warn(
+          "Failed to generate equation #{} after {} attempts (last rejection: {})", i, attempt - 1, lastReason
+        );
       }
     }
     return result;
   }
 
   private Pair<String, String> generateEquation(
-    List<Variable> variables, EquationConfig config
+    List<Variable> variables, EquationPlan plan, RandomGenerator random
   ) throws InvalidExpressionException, IllegalStateException {
-    // pick operands to use in expression
-    LinkedList<Operand> orderedOperands = new LinkedList<>();
-    for (int i = 0; i < config.variables().amount() - 1; i++) {
-      int randomIndex = NumberUtil.randomInt(0, config.operands().size() - 1);
-      orderedOperands.add(config.operands().get(randomIndex));
+    if (plan.index() != null) {
+      return generateEquationFromIndex(variables, plan, random);
+    } else if (plan.adaptiveSampler() != null) {
+      return generateEquationAdaptively(variables, plan, random);
+    } else if (plan.config().strategy() == EquationStrategy.BATCHED) {
+      return generateEquationInBatch(variables, plan, random);
     }
 
-    // pick one of the available variable combos to use
-    List<String> variableCombo = config.variables().combos().get(
-      NumberUtil.randomInt(0, config.variables().combos().size() - 1)
+    EquationShape shape = pickShape(plan, random);
+    if (plan.config().strategy() == EquationStrategy.CONSTRUCTIVE && shape.hasOpenSlot()) {
+      return generateEquationFromSolution(variables, shape, plan, random);
+    }
+    return generateEquation(variables, shape, plan, random);
+  }
+
+  private Pair<String, String> generateEquation(
+    List<Variable> variables, EquationShape shape, EquationPlan plan, RandomGenerator random
+  ) throws InvalidExpressionException {
+    // build expression tree with one slot per picked variable
+    ExpressionTerm expression = expressionNodeConverter.toExpressionTerm(
+      buildSlotTerms(shape.variables(), shape.variables().length, plan, random), shape.operands()
+    );
+
+    // solve and validate expression
+    BigDecimal expressionResult = plan.validator().solveAndValidate(
+      expression, toSlotValues(variables, shape.variables())
     );
 
-    // filter out all allowed variables to use
-    List<Variable> allowedVariables = variables.stream()
-      .filter(variable -> variableCombo.contains(variable.identifier())).toList();
+    return toEquation(expression, variables, shape.variables(), expressionResult, plan);
+  }
 
-    // pick variables to use in expression
-    LinkedList<Variable> orderedVariables = new LinkedList<>();
-    // first, add all variables required by variable combo
-    for (String identifier : variableCombo) {
-      if (orderedVariables.size() == config.variables().amount()) {
-        break;
-      }
-      allowedVariables.stream()
-        .filter(v -> identifier.equals(v.identifier()))
-        .findFirst().ifPresent(orderedVariables::add);
+  private EquationShape pickShape(EquationPlan plan, RandomGenerator random) throws IllegalStateException {
+    // pick operands to use in expression
+    Operand[] operands = new Operand[plan.slots() - 1];
+    for (int i = 0; i < operands.length; i++) {
+      operands[i] = plan.operands()[NumberUtil.randomInt(random, 0, plan.operands().length - 1)];
+    }
+    return pickShape(plan, Arrays.asList(operands), random);
+  }
+
+  private EquationShape pickShape(
+    EquationPlan plan, List<Operand> operands, RandomGenerator random
+  ) throws IllegalStateException {
+    // pick one of the available variable combos to use
+    int combo = NumberUtil.randomInt(random, 0, plan.comboVariables().length - 1);
+    return pickShape(plan, operands, combo, random);
+  }
+
+  private EquationShape pickShape(
+    EquationPlan plan, List<Operand> operands, int combo, RandomGenerator random
+  ) throws IllegalStateException {
+    int[] allowedVariables = plan.allowedVariables()[combo];
+    if (allowedVariables.length == 0) {
+      throw new IllegalStateException("Illegal state: picked variable combo does not match any variable");
     }
 
+    // pick variables to use in expression: first, add all variables required by variable combo
+    int[] orderedVariables = new int[plan.slots()];
+    int[] requiredVariables = plan.comboVariables()[combo];
+    System.arraycopy(requiredVariables, 0, orderedVariables, 0, requiredVariables.length);
+
     // if there's still space: fill remaining slots randomly
-    while (orderedVariables.size() < config.variables().amount()) {
-      int randomIndex = NumberUtil.randomInt(0, allowedVariables.size() - 1);
-      orderedVariables.add(allowedVariables.get(randomIndex));
+    for (int i = requiredVariables.length; i < orderedVariables.length; i++) {
+      orderedVariables[i] = allowedVariables[NumberUtil.randomInt(random, 0, allowedVariables.length - 1)];
     }
 
-    // validate that list sizes are correct
-    if (orderedOperands.size() != orderedVariables.size() - 1) {
-      throw new IllegalStateException(String.format(
-        "Illegal state: expected amount of operands: %d, actual: %d",
-        orderedVariables.size() - 1, orderedOperands.size()
-      ));
+    return new EquationShape(operands, allowedVariables, orderedVariables, requiredVariables.length);
+  }
+
+  /**
+   * Picks operands and variable combo of an equation with the plan's adaptive sampler, which favours the choices that
+   * passed validation most often so far, and reports back whether the equation passed.
+   */
+  private Pair<String, String> generateEquationAdaptively(
+    List<Variable> variables, EquationPlan plan, RandomGenerator random
+  ) throws InvalidExpressionException, IllegalStateException {
+    AdaptiveSampler sampler = plan.adaptiveSampler();
+    int choice = sampler.pick(random);
+    Operand[] operands = new Operand[plan.slots() - 1];
+    EquationIndex.unpack(sampler.operandSequence(choice), plan.operands(), operands);
+    try {
+      EquationShape shape = pickShape(plan, Arrays.asList(operands), sampler.combo(choice), random);
+      Pair<String, String> result = generateEquation(variables, shape, plan, random);
+      sampler.record(choice, true);
+      return result;
+    } catch (InvalidExpressionException | IllegalStateException e) {
+      sampler.record(choice, false);
+      throw e;
+    }
+  }
+
+  /**
+   * Picks the variables and mutations of an equation as usual, but instead of picking operands at random, picks one
+   * of the operand sequences the plan's index lists as valid for these slots.
+   */
+  private Pair<String, String> generateEquationFromIndex(
+    List<Variable> variables, EquationPlan plan, RandomGenerator random
+  ) throws InvalidExpressionException, IllegalStateException {
+    // operands are picked from the index once the slots are known
+    EquationShape shape = pickShape(plan, Collections.emptyList(), random);
+
+    int[] slotVariables = shape.variables();
+    int[] mutationStates = new int[slotVariables.length];
+    List<ExpressionTerm> slotTerms = new ArrayList<>(slotVariables.length);
+    for (int i = 0; i < slotVariables.length; i++) {
+      ExpressionTerm term = new SlotTerm(i);
+      if (plan.mutationEnabled() && plan.mutationAffected()[slotVariables[i]]) {
+        int amplifier = pickAmplifier(plan, random);
+        if (amplifier != 0) {
+          term = plan.mutate(term, amplifier);
+          mutationStates[i] = amplifier - plan.amplifierMin() + 1;
+        }
+      }
+      slotTerms.add(term);
     }
 
-    // build expression string with variable values hidden
-    String expressionWithIdentifiers = buildExpression(orderedVariables, orderedOperands, config);
+    BigDecimal[] slotValues = toSlotValues(variables, slotVariables);
+    EquationIndex index = plan.index();
+    int[] entries = index.entries(index.key(slotValues, mutationStates), slotTerms, slotValues, plan);
+    if (entries.length == 0) {
+      throw new InvalidExpressionException(
+        RejectionReason.NO_SOLUTION_CANDIDATE, "No valid operands exist for the picked variables"
+      );
+    }
 
-    // build separate expression string, where identifiers are replaced with their values
-    String expressionWithValues = replaceIdentifiersWithValues(expressionWithIdentifiers, orderedVariables);
+    Operand[] operands = new Operand[slotVariables.length - 1];
+    EquationIndex.unpack(entries[NumberUtil.randomInt(random, 0, entries.length - 1)], plan.operands(), operands);
+    ExpressionTerm expression = expressionNodeConverter.toExpressionTerm(slotTerms, Arrays.asList(operands));
+    BigDecimal expressionResult = plan.validator().solveAndValidate(expression, slotValues);
 
-    // set up validation
-    ExpressionValidator expressionValidator = new ExpressionValidator(expressionNodeConverter)
-      .keepWithinSolutionRange(config.solution().range())
-      .prohibitSelfDivision(Boolean.TRUE.equals(config.validate().selfDivision()))
-      .prohibitSelfSubtraction(Boolean.TRUE.equals(config.validate().selfSubtraction()))
-      .prohibitNegativeResults(Boolean.TRUE.equals(config.validate().negativeResults()))
-      .prohibitDecimalResults(Boolean.TRUE.equals(config.validate().decimalResults()))
-      .prohibitDecimalSolution(Boolean.TRUE.equals(config.validate().decimalSolution()));
+    return toEquation(expression, variables, slotVariables, expressionResult, plan);
+  }
 
-    // solve and validate expression
-    BigDecimal expressionResult = expressionValidator.solveAndValidate(expressionWithValues);
+  /**
+   * Picks the operands and slot mutations of an equation as usual, but instead of trying a single combo and variables,
+   * validates the resulting expression for all variable assignments the plan allows at once (or a random sample of
+   * them, if there are too many) and picks one of the rows that pass. As all rows share the same expression tree, a
+   * mutated slot only takes variables affected by mutations.
+   */
+  private Pair<String, String> generateEquationInBatch(
+    List<Variable> variables, EquationPlan plan, RandomGenerator random
+  ) throws InvalidExpressionException {
+    // pick operands to use in expression
+    Operand[] operands = new Operand[plan.slots() - 1];
+    for (int i = 0; i < operands.length; i++) {
+      operands[i] = plan.operands()[NumberUtil.randomInt(random, 0, plan.operands().length - 1)];
+    }
 
-    String solutionPart = config.solution().hide() ? Symbols.QUESTION_MARK : expressionResult.toPlainString();
-    String finalEquationWithIdentifiers = expressionWithIdentifiers + Symbols.EQUALS + solutionPart;
-    String finalEquationWithValues = expressionWithValues + Symbols.EQUALS + solutionPart;
+    // decide the mutation of each slot up front
+    boolean anyAffected = false;
+    for (boolean affected : plan.mutationAffected()) {
+      anyAffected |= affected;
+    }
+    boolean[] mutated = new boolean[plan.slots()];
+    List<ExpressionTerm> slotTerms = new ArrayList<>(plan.slots());
+    for (int i = 0; i < plan.slots(); i++) {
+      int amplifier = plan.mutationEnabled() && anyAffected ? pickAmplifier(plan, random) : 0;
+      mutated[i] = amplifier != 0;
+      slotTerms.add(mutated[i] ? plan.mutate(new SlotTerm(i), amplifier) : new SlotTerm(i));
+    }
+    ExpressionTerm expression = expressionNodeConverter.toExpressionTerm(slotTerms, Arrays.asList(operands));
 
-    return new Pair<>(finalEquationWithIdentifiers, finalEquationWithValues);
+    // fill the slot columns with all assignments of all combos, or random ones if there are too many
+    long combinations = 0;
+    for (int combo = 0; combo < plan.comboVariables().length; combo++) {
+      combinations = Math.min(combinations + countAssignments(plan, combo), MAX_BATCH_ROWS + 1L);
+    }
+    int capacity = (int) Math.min(combinations, MAX_BATCH_ROWS);
+    int[][] rowVariables = new int[plan.slots()][capacity];
+    long[][] slotColumns = new long[plan.slots()][capacity];
+    int[] assignment = new int[plan.slots()];
+    int rows = 0;
+    for (int candidate = 0; candidate < capacity; candidate++) {
+      boolean assigned = combinations <= MAX_BATCH_ROWS
+        ? toAssignment(plan, candidate, assignment)
+        : pickAssignment(plan, random, assignment);
+      for (int i = 0; i < assignment.length && assigned; i++) {
+        assigned = !mutated[i] || plan.mutationAffected()[assignment[i]];
+      }
+      if (assigned) {
+        for (int i = 0; i < assignment.length; i++) {
+          rowVariables[i][rows] = assignment[i];
+          slotColumns[i][rows] = variables.get(assignment[i]).value().longValueExact();
+        }
+        rows++;
+      }
+    }
+
+    long[] validRows = plan.validator().validateBatch(expression, slotColumns, rows);
+    int validRowCount = 0;
+    for (long word : validRows) {
+      validRowCount += Long.bitCount(word);
+    }
+    if (validRowCount == 0) {
+      throw new InvalidExpressionException(
+        RejectionReason.NO_SOLUTION_CANDIDATE, "No valid variables exist for the picked operands and mutations"
+      );
+    }
+
+    // pick one of the valid rows
+    int row = ExpressionValidator.nextRow(validRows, 0);
+    for (int skip = NumberUtil.randomInt(random, 0, validRowCount - 1); skip > 0; skip--) {
+      row = ExpressionValidator.nextRow(validRows, row + 1);
+    }
+    int[] slotVariables = new int[plan.slots()];
+    for (int i = 0; i < slotVariables.length; i++) {
+      slotVariables[i] = rowVariables[i][row];
+    }
+    BigDecimal expressionResult = plan.validator().solveAndValidate(
+      expression, toSlotValues(variables, slotVariables)
+    );
+
+    return toEquation(expression, variables, slotVariables, expressionResult, plan);
   }
 
-  private String buildExpression(List<Variable> variables, List<Operand> operands, EquationConfig config) {
-    StringBuilder resultBuilder = new StringBuilder();
+  /**
+   * Returns the amount of variable assignments of a combo: its required variables come first, all remaining slots may
+   * hold any variable it allows.
+   */
+  private long countAssignments(EquationPlan plan, int combo) {
+    long result = 1;
+    for (int i = plan.comboVariables()[combo].length; i < plan.slots() && result <= MAX_BATCH_ROWS; i++) {
+      result *= plan.allowedVariables()[combo].length;
+    }
+    return result;
+  }
 
-    for (int i = 0; i < variables.size(); i++) {
-      Variable variable = variables.get(i);
-      String variableExpression;
-      if (config.mutation().enabled() && config.mutation().affectedVariables().contains(variable.identifier())) {
-        variableExpression = mutateVariable(
-          variable, config.mutation().chance(), config.mutation().multiplier(), config.mutation().amplifier()
-        );
-      } else {
-        variableExpression = variable.identifier();
+  /**
+   * Writes the assignment with the given number into the array, counting through the assignments of all combos in
+   * order. Returns false if the number is beyond the last assignment.
+   */
+  private boolean toAssignment(EquationPlan plan, int number, int[] result) {
+    int rest = number;
+    for (int combo = 0; combo < plan.comboVariables().length; combo++) {
+      long assignments = countAssignments(plan, combo);
+      if (rest < assignments) {
+        int[] requiredVariables = plan.comboVariables()[combo];
+        int[] allowedVariables = plan.allowedVariables()[combo];
+        System.arraycopy(requiredVariables, 0, result, 0, requiredVariables.length);
+        for (int i = requiredVariables.length; i < result.length; i++) {
+          result[i] = allowedVariables[rest % allowedVariables.length];
+          rest /= allowedVariables.length;
+        }
+        return true;
       }
-      Operand operand = i == operands.size() ? null : operands.get(i);
-      resultBuilder.append(variableExpression);
-      if (operand != null) {
-        resultBuilder.append(operand.symbol());
+      rest -= (int) assignments;
+    }
+    return false;
+  }
+
+  /**
+   * Writes a random assignment into the array, picked like {@link #pickShape} picks the variables of an equation.
+   */
+  private boolean pickAssignment(EquationPlan plan, RandomGenerator random, int[] result) {
+    int combo = NumberUtil.randomInt(random, 0, plan.comboVariables().length - 1);
+    int[] requiredVariables = plan.comboVariables()[combo];
+    int[] allowedVariables = plan.allowedVariables()[combo];
+    if (allowedVariables.length == 0) {
+      return false;
+    }
+    System.arraycopy(requiredVariables, 0, result, 0, requiredVariables.length);
+    for (int i = requiredVariables.length; i < result.length; i++) {
+      result[i] = allowedVariables[NumberUtil.randomInt(random, 0, allowedVariables.length - 1)];
+    }
+    return true;
+  }
+
+  /**
+   * Builds an equation towards its solution: the shape is picked as usual, except for the last operand and the last
+   * variable slot. Each combination of operand and allowed variable for the last slot is validated, which includes
+   * the solution range, and one of the valid equations is picked at random.
+   */
+  private Pair<String, String> generateEquationFromSolution(
+    List<Variable> variables, EquationShape shape, EquationPlan plan, RandomGenerator random
+  ) throws InvalidExpressionException {
+    int openSlot = shape.variables().length - 1;
+    List<ExpressionTerm> slotTerms = buildSlotTerms(shape.variables(), openSlot, plan, random);
+
+    // leave the last slot open (it may still be mutated like any other slot)
+    ExpressionTerm openSlotTerm = new SlotTerm(openSlot);
+    if (plan.mutationEnabled()) {
+      openSlotTerm = mutateTerm(openSlotTerm, plan, random);
+    }
+    boolean openSlotMutated = !(openSlotTerm instanceof SlotTerm);
+    slotTerms.add(openSlotTerm);
+
+    BigDecimal[] slotValues = toSlotValues(variables, shape.variables());
+    List<EquationCandidate> candidates = new ArrayList<>();
+    for (Operand operand : plan.distinctOperands()) {
+      List<Operand> operands = new ArrayList<>(shape.operands());
+      operands.set(operands.size() - 1, operand);
+      ExpressionTerm expression = expressionNodeConverter.toExpressionTerm(slotTerms, operands);
+      for (int variable : shape.allowedVariables()) {
+        if (openSlotMutated && !plan.mutationAffected()[variable]) {
+          continue;
+        }
+        slotValues[openSlot] = variables.get(variable).value();
+        try {
+          BigDecimal expressionResult = plan.validator().solveAndValidate(expression, slotValues);
+          candidates.add(new EquationCandidate(expression, variable, expressionResult));
+        } catch (InvalidExpressionException e) {
+          // try next variable
+        }
       }
     }
 
-    return resultBuilder.toString();
+    if (candidates.isEmpty()) {
+      throw new InvalidExpressionException(
+        RejectionReason.NO_SOLUTION_CANDIDATE, "No valid solution can be constructed for the picked shape"
+      );
+    }
+    EquationCandidate candidate = candidates.get(NumberUtil.randomInt(random, 0, candidates.size() - 1));
+    int[] slotVariables = shape.variables().clone();
+    slotVariables[openSlot] = candidate.variable();
+    return toEquation(candidate.expression(), variables, slotVariables, candidate.result(), plan);
   }
 
-  private String mutateVariable(
-    Variable variable, BigDecimal chance, BigDecimal multiplier, Range amplifier
+  private Pair<String, String> toEquation(
+    ExpressionTerm expression,
+    List<Variable> variables,
+    int[] slotVariables,
+    BigDecimal expressionResult,
+    EquationPlan plan
   ) {
-    boolean mutate = NumberUtil.randomInt(0, 100) < (chance.floatValue() * 100);
-    if (!mutate) {
-      return variable.identifier();
+    String[] identifiers = new String[slotVariables.length];
+    String[] values = new String[slotVariables.length];
+    for (int i = 0; i < slotVariables.length; i++) {
+      Variable variable = variables.get(slotVariables[i]);
+      identifiers[i] = variable.identifier();
+      values[i] = variable.value().toPlainString();
     }
 
-    String multipliedExpressionString;
-    String amplifiedExpressionString;
+    String solutionPart = plan.hideSolution() ? Symbols.QUESTION_MARK : expressionResult.toPlainString();
+    String finalEquationWithIdentifiers = expression.render(identifiers) + Symbols.EQUALS + solutionPart;
+    String finalEquationWithValues = expression.render(values) + Symbols.EQUALS + solutionPart;
 
-    // apply multiplier
-    if (multiplier.equals(new BigDecimal("0.25")) || multiplier.equals(new BigDecimal("0.5"))) {
-      multipliedExpressionString = Symbols.PARENTHESES_OPEN + variable.identifier()
-        + Operand.MULTIPLICATION.symbol() + multiplier.toPlainString() + Symbols.PARENTHESIS_CLOSE;
-    } else {
-      multipliedExpressionString = variable.identifier();
+    return new Pair<>(finalEquationWithIdentifiers, finalEquationWithValues);
+  }
+
+  private BigDecimal[] toSlotValues(List<Variable> variables, int[] slotVariables) {
+    BigDecimal[] result = new BigDecimal[slotVariables.length];
+    for (int i = 0; i < slotVariables.length; i++) {
+      result[i] = variables.get(slotVariables[i]).value();
     }
+    return result;
+  }
 
-    // apply amplifier
-    int amplifierValue = NumberUtil.randomInt(amplifier.min().intValue(), amplifier.max().intValue());
-    if (amplifierValue != 1) {
-      amplifiedExpressionString = "(" + amplifierValue + Operand.MULTIPLICATION.symbol()
-        + multipliedExpressionString + ")";
-    } else {
-      amplifiedExpressionString = multipliedExpressionString;
+  /**
+   * The operands and variables (by index) picked for an equation. The first {@code requiredVariables} variables are
+   * the ones required by the picked combo, all other slots were filled randomly with one of the allowed variables.
+   */
+  private record EquationShape(
+    List<Operand> operands,
+    int[] allowedVariables,
+    int[] variables,
+    int requiredVariables
+  ) {
+    boolean hasOpenSlot() {
+      return requiredVariables < variables.length;
     }
+  }
 
-    return amplifiedExpressionString;
+  private record EquationCandidate(
+    ExpressionTerm expression,
+    int variable,
+    BigDecimal result
+  ) {
   }
 
-  private String replaceIdentifiersWithValues(String expressionWithIdentifiers, List<Variable> variables) {
-    String result = expressionWithIdentifiers;
-    for (Variable variable : variables) {
-      result = result.replace(variable.identifier(), variable.value().toPlainString());
+  /**
+   * Builds the terms of the first {@code count} slots, mutating those holding a mutation-affected variable.
+   */
+  private List<ExpressionTerm> buildSlotTerms(
+    int[] slotVariables, int count, EquationPlan plan, RandomGenerator random
+  ) {
+    List<ExpressionTerm> result = new ArrayList<>(count + 1);
+
+    for (int i = 0; i < count; i++) {
+      ExpressionTerm term = new SlotTerm(i);
+      if (plan.mutationEnabled() && plan.mutationAffected()[slotVariables[i]]) {
+        term = mutateTerm(term, plan, random);
+      }
+      result.add(term);
     }
+
     return result;
   }
 
+  private ExpressionTerm mutateTerm(ExpressionTerm term, EquationPlan plan, RandomGenerator random) {
+    int amplifier = pickAmplifier(plan, random);
+    return amplifier == 0 ? term : plan.mutate(term, amplifier);
+  }
+
+  /**
+   * Decides whether a slot is mutated, returning the amplifier value to mutate it with, or 0 if it isn't mutated.
+   */
+  private int pickAmplifier(EquationPlan plan, RandomGenerator random) {
+    boolean mutate = NumberUtil.randomInt(random, 0, 100) < plan.mutationChance();
+    if (!mutate) {
+      return 0;
+    }
+    return NumberUtil.randomInt(random, plan.amplifierMin(), plan.amplifierMax());
+  }
+
+  /**
+   * Replaces quizzes that were already generated earlier in the run. Quizzes are checked in index order on the
+   * consuming thread, and replacements are generated like additional quizzes after the last one (with index
+   * {@code amount + 1}, {@code amount + 2}, ...), so seeded runs stay reproducible regardless of parallelism. Returns
+   * null if no unique quiz could be generated.
+   */
+  private class UniqueQuizFilter implements UnaryOperator<MathQuiz> {
+
+    private final Config config;
+    private final CancellationToken token;
+    private final QuizFingerprints fingerprints;
+    private int lastReplacementIndex;
+    private int uniqueQuizzes;
+
+    UniqueQuizFilter(Config config, CancellationToken token) {
+      this.config = config;
+      this.token = token;
+      int memoryBudget = config.quiz().uniqueMemoryBudget() == null
+        ? DEFAULT_UNIQUE_MEMORY_BUDGET
+        : config.quiz().uniqueMemoryBudget();
+      this.fingerprints = QuizFingerprints.create(config.quiz().amount(), memoryBudget * 1024L * 1024L);
+      this.lastReplacementIndex = config.quiz().amount();
+      LOG.info("Rejecting duplicate quizzes using {}", fingerprints.describe());
+    }
+
+    @Override
+    public MathQuiz apply(MathQuiz quiz) {
+      MathQuiz result = quiz;
+      int attempts = plan(config).retryLimits().quizAttempts();
+      for (int attempt = 1; attempt <= attempts && !token.isCancelled(); attempt++) {
+        if (result != null) {
+          if (fingerprints.add(QuizFingerprints.fingerprint(result))) {
+            uniqueQuizzes++;
+            return result;
+          }
+          statistics.recordDuplicate();
+        }
+        result = generateQuiz(config, ++lastReplacementIndex, token);
+      }
+      if (!token.isCancelled()) {
+        LOG.warn(
+          "Failed to generate a unique quiz after {} attempts, stopping after {} unique quizzes",
+          attempts, uniqueQuizzes
+        );
+      }
+      return null;
+    }
+
+  }
+
 }
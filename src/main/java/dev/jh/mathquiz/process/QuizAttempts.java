@@ -0,0 +1,54 @@
+package dev.jh.mathquiz.process;
+
+/**
+ * Tracks the attempts of a single quiz against the retry limits of its run and its cancellation token (which includes
+ * the quiz deadline, if any).
+ */
+class QuizAttempts {
+
+  private final RetryLimits limits;
+  private final CancellationToken token;
+
+  private int remainingBudget;
+
+  QuizAttempts(RetryLimits limits, CancellationToken token) {
+    this.limits = limits;
+    this.token = token;
+    this.remainingBudget = limits.attemptBudget();
+  }
+
+  RetryLimits limits() {
+    return limits;
+  }
+
+  /**
+   * Returns whether the given (1-based) attempt of the quiz may be made.
+   */
+  boolean canAttemptQuiz(int attempt) {
+    return attempt <= limits.quizAttempts() && !isStopped();
+  }
+
+  /**
+   * Returns whether the given (1-based) attempt of an equation may be made, given the amount of times the equation was
+   * rejected for the same reason in a row.
+   */
+  boolean canAttemptEquation(int attempt, int identicalRejections) {
+    if (limits.policy() == RetryPolicy.EARLY_STOP && identicalRejections >= limits.identicalRejections()) {
+      return false;
+    }
+    return attempt <= limits.equationAttempts() && !isStopped();
+  }
+
+  void recordEquationAttempt() {
+    remainingBudget--;
+  }
+
+  /**
+   * Returns whether the quiz has to stop entirely, as it was cancelled, its deadline passed or its attempt budget was
+   * used up.
+   */
+  boolean isStopped() {
+    return limits.policy() == RetryPolicy.BUDGETED && remainingBudget <= 0 || token.isCancelled();
+  }
+
+}
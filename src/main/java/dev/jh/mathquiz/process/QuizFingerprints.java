@@ -0,0 +1,57 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.util.type.Pair;
+
+/**
+ * Remembers the fingerprints of all quizzes of a run, to reject quizzes that were already generated. Implementations
+ * are sized once for the expected amount of quizzes and never grow beyond that.
+ */
+interface QuizFingerprints {
+
+  long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * Adds the given fingerprint, returning false if it (probably) was added before.
+   */
+  boolean add(long fingerprint);
+
+  /**
+   * Returns a short description of the implementation, for logging.
+   */
+  String describe();
+
+  /**
+   * Creates the fingerprints of a run: an exact set if one with room for the expected amount of quizzes fits into the
+   * memory budget, otherwise a bloom filter using the whole budget (which may also reject a few unique quizzes).
+   */
+  static QuizFingerprints create(int expected, long memoryBudget) {
+    if (ExactQuizFingerprints.requiredMemory(expected) <= memoryBudget) {
+      return new ExactQuizFingerprints(expected);
+    }
+    return new BloomQuizFingerprints(expected, memoryBudget);
+  }
+
+  /**
+   * Calculates the canonical fingerprint of a quiz: a 64-bit FNV-1a hash over both forms of all its equations, in
+   * order.
+   */
+  static long fingerprint(MathQuiz quiz) {
+    long hash = FNV_OFFSET_BASIS;
+    for (Pair<String, String> equation : quiz.equations()) {
+      hash = hash(hash, equation.left());
+      hash = hash(hash, equation.right());
+    }
+    return hash;
+  }
+
+  private static long hash(long hash, String value) {
+    long result = hash;
+    for (int i = 0; i < value.length(); i++) {
+      result = (result ^ value.charAt(i)) * FNV_PRIME;
+    }
+    // terminate each value, so that moving characters between values changes the fingerprint
+    return (result ^ 0xffff) * FNV_PRIME;
+  }
+
+}
@@ -0,0 +1,44 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.config.QuizConfig;
+import dev.jh.mathquiz.config.QuizRetryConfig;
+
+import java.time.Duration;
+
+/**
+ * The retry policy and limits of a run, with defaults applied for all values not set in the config.
+ *
+ * @param attemptBudget       the maximum amount of equation attempts per quiz (only used by
+ *                            {@link RetryPolicy#BUDGETED})
+ * @param identicalRejections the amount of consecutive identical rejections after which an equation is given up (only
+ *                            used by {@link RetryPolicy#EARLY_STOP})
+ * @param quizTimeout         the maximum time to spend on a single quiz, or null if unlimited
+ */
+record RetryLimits(
+  RetryPolicy policy,
+  int quizAttempts,
+  int equationAttempts,
+  int attemptBudget,
+  int identicalRejections,
+  Duration quizTimeout
+) {
+
+  // the limits used to be exclusive, so that 99 attempts were made - kept, as seeded runs would change otherwise
+  private static final int DEFAULT_QUIZ_ATTEMPTS = 99;
+  private static final int DEFAULT_EQUATION_ATTEMPTS = 99;
+  private static final int DEFAULT_ATTEMPT_BUDGET = 1000;
+  private static final int DEFAULT_IDENTICAL_REJECTIONS = 10;
+
+  static RetryLimits of(QuizConfig config) {
+    QuizRetryConfig retry = config.retry();
+    return new RetryLimits(
+      retry.policy() == null ? RetryPolicy.FIXED : retry.policy(),
+      retry.quizAttempts() == null ? DEFAULT_QUIZ_ATTEMPTS : retry.quizAttempts(),
+      retry.equationAttempts() == null ? DEFAULT_EQUATION_ATTEMPTS : retry.equationAttempts(),
+      retry.attemptBudget() == null ? DEFAULT_ATTEMPT_BUDGET : retry.attemptBudget(),
+      retry.identicalRejections() == null ? DEFAULT_IDENTICAL_REJECTIONS : retry.identicalRejections(),
+      config.timeout().quiz() == null ? null : Duration.ofMillis(config.timeout().quiz())
+    );
+  }
+
+}
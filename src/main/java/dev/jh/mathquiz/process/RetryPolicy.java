@@ -0,0 +1,43 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.util.StringUtil;
+
+import java.util.Arrays;
+
+/**
+ * Decides how long the generator keeps retrying quizzes and equations that were rejected.
+ */
+public enum RetryPolicy {
+
+  /**
+   * Retries each quiz and each equation up to a fixed amount of attempts.
+   */
+  FIXED("fixed"),
+  /**
+   * Like {@link #FIXED}, but additionally stops once a quiz used up a budget of equation attempts in total.
+   */
+  BUDGETED("budgeted"),
+  /**
+   * Like {@link #FIXED}, but gives up on an equation once it was rejected for the same reason a number of times in a
+   * row.
+   */
+  EARLY_STOP("early-stop");
+
+  private final String text;
+
+  RetryPolicy(String text) {
+    this.text = text;
+  }
+
+  public String text() {
+    return text;
+  }
+
+  public static RetryPolicy byText(String text) {
+    if (StringUtil.hasNoContent(text)) {
+      return null;
+    }
+    return Arrays.stream(RetryPolicy.values()).filter(p -> text.equals(p.text())).findFirst().orElse(null);
+  }
+
+}
@@ -0,0 +1,199 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.config.VariableConfig;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples distinct values for all variables of a config with exactly one random draw per variable: each draw picks
+ * the k-th value of the variable's range that is still allowed, instead of drawing from the full range and rejecting
+ * collisions. A value is allowed if it isn't taken yet and taking it leaves a distinct value for every later variable,
+ * so a sample never fails once the ranges can supply distinct values at all. Instances are immutable and can be shared
+ * between threads.
+ */
+public class VariableSampler {
+
+  private final List<VariableConfig> configs;
+  private final String[] identifiers;
+  private final long[] mins;
+  private final long[] maxs;
+  private final boolean satisfiable;
+
+  public VariableSampler(List<VariableConfig> configs) {
+    this.configs = configs;
+    identifiers = new String[configs.size()];
+    mins = new long[configs.size()];
+    maxs = new long[configs.size()];
+    for (int i = 0; i < configs.size(); i++) {
+      VariableConfig config = configs.get(i);
+      identifiers[i] = config.identifier();
+      mins[i] = config.range().min().intValue();
+      maxs[i] = config.range().max().intValue();
+    }
+    satisfiable = canSupplyDistinctValues(configs);
+  }
+
+  public List<VariableConfig> configs() {
+    return configs;
+  }
+
+  /**
+   * Samples a distinct value for each variable, in config order. Returns an empty list if (and only if) the ranges
+   * can't supply distinct values at all.
+   */
+  public List<Variable> sample(RandomGenerator random) {
+    if (!satisfiable) {
+      return Collections.emptyList();
+    }
+
+    // values taken so far, kept in ascending order
+    long[] taken = new long[identifiers.length];
+    long[] values = new long[identifiers.length];
+
+    for (int i = 0; i < identifiers.length; i++) {
+      // excluded values within the range, as merged intervals {from, to} in ascending order
+      List<long[]> excluded = excludedValues(i, taken);
+      long allowed = maxs[i] - mins[i] + 1;
+      for (long[] interval : excluded) {
+        allowed -= interval[1] - interval[0] + 1;
+      }
+      if (allowed <= 0) {
+        // can't happen, as every draw leaves a distinct value for all later variables
+        return Collections.emptyList();
+      }
+
+      // pick the k-th allowed value by skipping over all excluded values up to it
+      long value = mins[i] + random.nextLong(allowed);
+      for (long[] interval : excluded) {
+        if (interval[0] > value) {
+          break;
+        }
+        value += interval[1] - interval[0] + 1;
+      }
+      values[i] = value;
+
+      int insertAt = i;
+      while (insertAt > 0 && taken[insertAt - 1] > value) {
+        taken[insertAt] = taken[insertAt - 1];
+        insertAt--;
+      }
+      taken[insertAt] = value;
+    }
+
+    List<Variable> result = new ArrayList<>(identifiers.length);
+    for (int i = 0; i < identifiers.length; i++) {
+      result.add(new Variable(identifiers[i], BigDecimal.valueOf(values[i])));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the values the variable at the given index must not take, given the (ascending) values taken by all
+   * variables before it: the taken values themselves, and all values of tight intervals. An interval is tight if it
+   * has just as many free values as there are later variables whose range lies within it - taking one of its values
+   * would leave one of these variables without a distinct value. Only intervals bounded by the later variables' range
+   * limits need to be checked, and none can be tight while each later range has more free values than there are later
+   * variables, which is the common case.
+   */
+  private List<long[]> excludedValues(int index, long[] taken) {
+    List<long[]> result = new ArrayList<>();
+    for (int t = 0; t < index; t++) {
+      if (taken[t] >= mins[index] && taken[t] <= maxs[index]) {
+        result.add(new long[] {taken[t], taken[t]});
+      }
+    }
+
+    int later = identifiers.length - index - 1;
+    boolean tightPossible = false;
+    for (int j = index + 1; j < identifiers.length && !tightPossible; j++) {
+      tightPossible = freeValues(mins[j], maxs[j], taken, index) <= later;
+    }
+    if (!tightPossible) {
+      return result;
+    }
+
+    for (int l = index + 1; l < identifiers.length; l++) {
+      for (int r = index + 1; r < identifiers.length; r++) {
+        long from = mins[l];
+        long to = maxs[r];
+        if (from > to || to < mins[index] || from > maxs[index]) {
+          continue;
+        }
+        int within = 0;
+        for (int j = index + 1; j < identifiers.length; j++) {
+          if (mins[j] >= from && maxs[j] <= to) {
+            within++;
+          }
+        }
+        if (within > 0 && within >= freeValues(from, to, taken, index)) {
+          result.add(new long[] {Math.max(from, mins[index]), Math.min(to, maxs[index])});
+        }
+      }
+    }
+    return merge(result);
+  }
+
+  private static long freeValues(long from, long to, long[] taken, int takenCount) {
+    long result = to - from + 1;
+    for (int t = 0; t < takenCount; t++) {
+      if (taken[t] >= from && taken[t] <= to) {
+        result--;
+      }
+    }
+    return result;
+  }
+
+  private static List<long[]> merge(List<long[]> intervals) {
+    intervals.sort(Comparator.comparingLong(interval -> interval[0]));
+    List<long[]> result = new ArrayList<>(intervals.size());
+    for (long[] interval : intervals) {
+      long[] last = result.isEmpty() ? null : result.get(result.size() - 1);
+      if (last != null && interval[0] <= last[1] + 1) {
+        last[1] = Math.max(last[1], interval[1]);
+      } else {
+        result.add(interval.clone());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether the variable ranges can supply a distinct value for every variable at all. Assigning each range
+   * (ordered by maximum) the smallest free value within it finds an assignment whenever one exists.
+   */
+  public static boolean canSupplyDistinctValues(List<VariableConfig> configs) {
+    long[][] ranges = new long[configs.size()][];
+    for (int i = 0; i < configs.size(); i++) {
+      VariableConfig config = configs.get(i);
+      ranges[i] = new long[] {config.range().min().intValue(), config.range().max().intValue()};
+    }
+    Arrays.sort(ranges, Comparator.comparingLong(range -> range[1]));
+
+    long[] assigned = new long[ranges.length];
+    for (int i = 0; i < ranges.length; i++) {
+      long candidate = ranges[i][0];
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (int a = 0; a < i; a++) {
+          if (assigned[a] == candidate) {
+            candidate++;
+            changed = true;
+          }
+        }
+      }
+      if (candidate > ranges[i][1]) {
+        return false;
+      }
+      assigned[i] = candidate;
+    }
+    return true;
+  }
+
+}
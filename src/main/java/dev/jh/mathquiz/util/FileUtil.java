@@ -1,5 +1,6 @@
 package dev.jh.mathquiz.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -32,4 +33,10 @@ public final class FileUtil {
     return properties;
   }
 
+  public static Properties loadProperties(byte[] content) throws IOException {
+    Properties properties = new Properties();
+    properties.load(new ByteArrayInputStream(content));
+    return properties;
+  }
+
 }
@@ -3,15 +3,37 @@ package dev.jh.mathquiz.util;
 import dev.jh.mathquiz.util.type.Range;
 
 import java.math.BigDecimal;
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public final class NumberUtil {
 
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
   private NumberUtil() {
   }
 
   public static int randomInt(int min, int max) {
-    return ThreadLocalRandom.current().nextInt(min, max + 1);
+    return randomInt(ThreadLocalRandom.current(), min, max);
+  }
+
+  public static int randomInt(RandomGenerator random, int min, int max) {
+    return random.nextInt(min, max + 1);
+  }
+
+  /**
+   * Creates an independent random stream for the given index of a seeded run. The stream only depends on the seed and
+   * the index, so any index can be reproduced directly without generating the ones before it.
+   */
+  public static RandomGenerator seededRandom(long seed, long index) {
+    return new SplittableRandom(mix64(seed + (index + 1) * GOLDEN_GAMMA));
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
   }
 
   public static boolean isWithinRange(Range range, BigDecimal number) {
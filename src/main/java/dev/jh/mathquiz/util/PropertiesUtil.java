@@ -10,31 +10,32 @@ public final class PropertiesUtil {
   private PropertiesUtil() {
   }
 
-  public static  Map<Integer, Properties> toPropertiesPerIndexMap(Properties properties, String propertyPrefix) {
-    Map<Integer, Properties> result = new HashMap<>();
+  /**
+   * Groups the indexed properties of each prefix (e.g. {@code equation.12.operands} for the prefix
+   * {@code equation.}) by their index, in a single pass over all keys. Indices may have any amount of digits; keys
+   * without a plain index (digits up to the next dot, without leading zeros) are ignored.
+   */
+  public static Map<String, NavigableMap<Integer, Properties>> toPropertiesPerIndexMap(
+    Properties properties, String... propertyPrefixes
+  ) {
+    Map<String, NavigableMap<Integer, Properties>> result = new HashMap<>();
+    for (String propertyPrefix : propertyPrefixes) {
+      result.put(propertyPrefix, new TreeMap<>());
+    }
 
     for (Map.Entry<Object, Object> entry : properties.entrySet()) {
       String key = String.valueOf(entry.getKey());
-
-      if (!String.valueOf(key).startsWith(propertyPrefix)) {
-        continue;
-      }
-
-      Integer index;
-      try {
-        index = Integer.parseInt(String.valueOf(
-          key.charAt(propertyPrefix.length())
-        ));
-      } catch (NumberFormatException e) {
-        continue;
-      }
-
-      if (!result.containsKey(index) || result.get(index).isEmpty()) {
-        Properties indexProperties = new Properties();
-        indexProperties.put(entry.getKey(), entry.getValue());
-        result.put(index, indexProperties);
-      } else {
-        result.get(index).put(entry.getKey(), entry.getValue());
+      for (String propertyPrefix : propertyPrefixes) {
+        if (!key.startsWith(propertyPrefix)) {
+          continue;
+        }
+        int index = parseIndex(key, propertyPrefix.length());
+        if (index >= 0) {
+          result.get(propertyPrefix)
+            .computeIfAbsent(index, i -> new Properties())
+            .put(entry.getKey(), entry.getValue());
+        }
+        break;
       }
     }
 
@@ -61,6 +62,14 @@ public final class PropertiesUtil {
     }
   }
 
+  public static Long getLong(Properties properties, String key, Long fallback) {
+    try {
+      return Long.parseLong(properties.getProperty(key));
+    } catch (NullPointerException | NumberFormatException e) {
+      return fallback;
+    }
+  }
+
   public static LinkedList<Integer> getIntegerLinkedList(
     Properties properties, String key, String delimiter, LinkedList<Integer> fallback
   ) {
@@ -122,4 +131,29 @@ public final class PropertiesUtil {
       return fallback;
     }
   }
+
+  /**
+   * Parses the index starting at the given position of a key, up to the next dot (or the end of the key). Returns -1
+   * if there is no valid index.
+   */
+  private static int parseIndex(String key, int start) {
+    int end = key.indexOf('.', start);
+    if (end < 0) {
+      end = key.length();
+    }
+    int length = end - start;
+    if (length == 0 || length > 9 || length > 1 && key.charAt(start) == '0') {
+      return -1;
+    }
+    int result = 0;
+    for (int i = start; i < end; i++) {
+      char digit = key.charAt(i);
+      if (digit < '0' || digit > '9') {
+        return -1;
+      }
+      result = result * 10 + (digit - '0');
+    }
+    return result;
+  }
+
 }
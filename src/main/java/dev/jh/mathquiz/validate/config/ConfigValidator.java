@@ -3,6 +3,7 @@ package dev.jh.mathquiz.validate.config;
 import dev.jh.mathquiz.config.Config;
 import dev.jh.mathquiz.config.EquationConfig;
 import dev.jh.mathquiz.config.VariableConfig;
+import dev.jh.mathquiz.process.VariableSampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +12,8 @@ public class ConfigValidator {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConfigValidator.class);
 
+  private final FeasibilityAnalyzer feasibilityAnalyzer = new FeasibilityAnalyzer();
+
   public void validate(Config config) throws InvalidConfigException {
     // check if config and individual configs are null
     if (config == null) {
@@ -42,6 +45,37 @@ public class ConfigValidator {
       LOG.warn("generating more than 10_000 quizzes ({}) may take longer than expected", config.quiz().amount());
     }
 
+    // check if parallelism is valid (not set means sequential generation)
+    if (config.quiz().parallelism() != null && config.quiz().parallelism() < 1) {
+      throw new InvalidConfigException(String.format(
+        "invalid quiz generation parallelism set: %d", config.quiz().parallelism()
+      ));
+    }
+
+    // check if memory budget for unique quizzes is valid (in MiB, not set means the default budget)
+    if (config.quiz().uniqueMemoryBudget() != null && config.quiz().uniqueMemoryBudget() < 1) {
+      throw new InvalidConfigException(String.format(
+        "invalid memory budget for unique quizzes set: %d", config.quiz().uniqueMemoryBudget()
+      ));
+    }
+
+    // check if result cache size is valid (not set or 0 means no cache)
+    if (config.quiz().resultCacheSize() != null && config.quiz().resultCacheSize() < 0) {
+      throw new InvalidConfigException(String.format(
+        "invalid result cache size set: %d", config.quiz().resultCacheSize()
+      ));
+    }
+
+    // check if retry limits are valid (not set means the default limits)
+    checkPositive(config.quiz().retry().quizAttempts(), "quiz attempts");
+    checkPositive(config.quiz().retry().equationAttempts(), "equation attempts");
+    checkPositive(config.quiz().retry().attemptBudget(), "attempt budget");
+    checkPositive(config.quiz().retry().identicalRejections(), "identical rejections");
+
+    // check if timeouts are valid (not set means no timeout)
+    checkPositive(config.quiz().timeout().run(), "run timeout");
+    checkPositive(config.quiz().timeout().quiz(), "quiz timeout");
+
     // check if equation order is set
     if (config.quiz().equationOrder() == null || config.quiz().equationOrder().isEmpty()) {
       throw new InvalidConfigException("equation order must be set");
@@ -71,6 +105,13 @@ public class ConfigValidator {
       }
     }
 
+    // check if the variable ranges can supply a distinct value for each variable
+    if (!VariableSampler.canSupplyDistinctValues(config.variables())) {
+      throw new InvalidConfigException(String.format(
+        "variable ranges cannot supply %d distinct values", config.variables().size()
+      ));
+    }
+
     // check individual equations
     for (int i = 1; i < config.equations().size(); i++) {
       EquationConfig equation = config.equations().get(i - 1);
@@ -183,6 +224,15 @@ public class ConfigValidator {
         }
       }
     }
+
+    // check if the equations can be generated at all with the variable ranges, operands and solution ranges
+    feasibilityAnalyzer.analyze(config);
+  }
+
+  private void checkPositive(Number value, String name) throws InvalidConfigException {
+    if (value != null && value.longValue() < 1) {
+      throw new InvalidConfigException(String.format("invalid %s set: %d", name, value.longValue()));
+    }
   }
 
 }
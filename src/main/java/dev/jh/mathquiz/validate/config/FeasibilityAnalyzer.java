@@ -0,0 +1,418 @@
+package dev.jh.mathquiz.validate.config;
+
+import dev.jh.mathquiz.config.Config;
+import dev.jh.mathquiz.config.EquationConfig;
+import dev.jh.mathquiz.config.EquationMutationConfig;
+import dev.jh.mathquiz.config.VariableConfig;
+import dev.jh.mathquiz.process.Operand;
+import dev.jh.mathquiz.util.type.Range;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Checks whether equations can be generated at all, before any quiz is generated. For each variable combo and operand
+ * sequence an equation may be built from, the range of its possible results is derived from the variable ranges and
+ * mutations with interval arithmetic, narrowed by the validation rules (no negative or decimal results) at each step.
+ * Equations where no combo and operand sequence can reach the solution range are rejected, equations where only few
+ * can are warned about with an estimate of their acceptance rate.
+ * <p>
+ * Operand sequences are walked depth-first, folding in one operand and slot at a time, so that sequences with a common
+ * prefix share its calculation and all sequences starting with a prefix that already violates the rules are skipped
+ * at once. Combos resulting in the same slot intervals are only analyzed once, and equations with too many sequences
+ * to analyze all of them are sampled with a fixed budget shared by their combos.
+ */
+public class FeasibilityAnalyzer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FeasibilityAnalyzer.class);
+
+  /**
+   * Equations with a lower estimated acceptance rate are warned about.
+   */
+  private static final double NEAR_IMPOSSIBLE_ACCEPTANCE = 0.01;
+
+  /**
+   * The maximum amount of operand sequences analyzed per combo. Beyond that, sequences are sampled, so an equation
+   * may still be warned about but never rejected.
+   */
+  private static final int MAX_OPERAND_SEQUENCES = 1 << 12;
+
+  /**
+   * The amount of operand sequences sampled per equation, split evenly across its combos.
+   */
+  private static final int SAMPLED_OPERAND_SEQUENCES = 1 << 12;
+
+  // tolerance for rounding errors of double calculations when narrowing intervals
+  private static final double EPSILON = 1e-9;
+
+  private static final BigDecimal QUARTER = new BigDecimal("0.25");
+  private static final BigDecimal HALF = new BigDecimal("0.5");
+
+  // operands by precedence, from loosest to tightest, as the ExpressionNodeConverter groups them
+  private static final Operand[] OPERANDS = {
+    Operand.SUBTRACTION, Operand.ADDITION, Operand.MULTIPLICATION, Operand.DIVISION
+  };
+
+  public void analyze(Config config) throws InvalidConfigException {
+    long start = System.nanoTime();
+    for (int i = 1; i <= config.equations().size(); i++) {
+      EquationConfig equation = config.equations().get(i - 1);
+      if (isAnalyzable(equation)) {
+        analyze(i, equation, config.variables());
+      }
+    }
+    LOG.debug(
+      "Analyzed feasibility of {} equations in {}ms", config.equations().size(), (System.nanoTime() - start) / 1_000_000
+    );
+  }
+
+  private void analyze(int index, EquationConfig equation, List<VariableConfig> variables)
+    throws InvalidConfigException {
+    int slots = equation.variables().amount();
+    Operand[] operands = equation.operands().toArray(new Operand[0]);
+    long sequences = (long) Math.pow(operands.length, slots - 1);
+    boolean exhaustive = sequences <= MAX_OPERAND_SEQUENCES;
+    long analyzedSequences = exhaustive
+      ? sequences
+      : Math.max(SAMPLED_OPERAND_SEQUENCES / equation.variables().combos().size(), 1);
+    SplittableRandom random = new SplittableRandom(index);
+
+    long choices = 0;
+    long feasibleChoices = 0;
+    double acceptance = 0;
+    Map<List<Interval>, Sequences> analyzedCombos = new HashMap<>();
+    for (List<String> combo : equation.variables().combos()) {
+      choices += analyzedSequences;
+      Interval[] slotIntervals = toSlotIntervals(combo, slots, equation, variables);
+      if (slotIntervals == null) {
+        // combo does not match any variable
+        continue;
+      }
+      // the analysis of all sequences only depends on the slot intervals, samples differ for each combo
+      Sequences analyzed = exhaustive ? analyzedCombos.get(Arrays.asList(slotIntervals)) : null;
+      if (analyzed == null) {
+        analyzed = new Sequences(equation, operands, slotIntervals);
+        if (exhaustive) {
+          analyzed.analyzeAll(Partial.start(slotIntervals[0]), 1);
+          analyzedCombos.put(Arrays.asList(slotIntervals), analyzed);
+        } else {
+          analyzed.analyzeSampled(random, sequences, analyzedSequences);
+        }
+      }
+      feasibleChoices += analyzed.feasible;
+      acceptance += analyzed.acceptance;
+    }
+    acceptance /= choices;
+
+    Range solutionRange = equation.solution().range();
+    if (feasibleChoices == 0 && exhaustive) {
+      throw new InvalidConfigException(String.format(
+        "equation #%d can never be generated - no variable combo and operands can reach its solution range (%s-%s)",
+        index, solutionRange.min().toPlainString(), solutionRange.max().toPlainString()
+      ));
+    } else if (acceptance < NEAR_IMPOSSIBLE_ACCEPTANCE) {
+      LOG.warn(
+        "equation #{} is unlikely to be generated - only {} of {} variable combo and operand choices can reach its "
+          + "solution range ({}-{}), estimated acceptance rate: {}",
+        index, feasibleChoices, choices, solutionRange.min().toPlainString(), solutionRange.max().toPlainString(),
+        String.format("%.2f%%", acceptance * 100)
+      );
+    } else {
+      LOG.debug(
+        "equation #{}: {} of {} variable combo and operand choices can reach its solution range, estimated acceptance "
+          + "rate: {}",
+        index, feasibleChoices, choices, String.format("%.1f%%", acceptance * 100)
+      );
+    }
+  }
+
+  /**
+   * Returns whether the equation has all values set that the analysis needs. Missing values are reported by the
+   * regular validation instead.
+   */
+  private boolean isAnalyzable(EquationConfig equation) {
+    EquationMutationConfig mutation = equation.mutation();
+    boolean mutationComplete = !Boolean.TRUE.equals(mutation.enabled())
+      || mutation.chance() != null && mutation.multiplier() != null && mutation.amplifier() != null;
+    return equation.operands() != null && !equation.operands().isEmpty()
+      && equation.variables().amount() != null && equation.variables().amount() >= 2
+      && equation.variables().combos() != null && !equation.variables().combos().isEmpty()
+      && equation.solution().range() != null
+      && mutationComplete;
+  }
+
+  /**
+   * Derives the possible values of each slot for a combo: the first slots hold the variables required by the combo,
+   * all others may hold any variable the combo allows. Returns null if the combo doesn't allow any variable.
+   */
+  private Interval[] toSlotIntervals(
+    List<String> combo, int slots, EquationConfig equation, List<VariableConfig> variables
+  ) {
+    List<Interval> required = new ArrayList<>();
+    Interval allowed = null;
+    for (String identifier : combo) {
+      for (VariableConfig variable : variables) {
+        if (identifier.equals(variable.identifier())) {
+          if (required.size() < slots) {
+            required.add(toInterval(variable, equation.mutation()));
+          }
+          break;
+        }
+      }
+    }
+    for (VariableConfig variable : variables) {
+      if (combo.contains(variable.identifier())) {
+        Interval interval = toInterval(variable, equation.mutation());
+        allowed = allowed == null ? interval : allowed.hull(interval);
+      }
+    }
+    if (allowed == null) {
+      return null;
+    }
+
+    Interval[] result = new Interval[slots];
+    for (int i = 0; i < slots; i++) {
+      result[i] = i < required.size() ? required.get(i) : allowed;
+    }
+    return result;
+  }
+
+  private Interval toInterval(VariableConfig variable, EquationMutationConfig mutation) {
+    Interval result = new Interval(variable.range().min().doubleValue(), variable.range().max().doubleValue());
+    boolean mutated = Boolean.TRUE.equals(mutation.enabled())
+      && mutation.chance().signum() > 0
+      && mutation.affectedVariables() != null
+      && mutation.affectedVariables().contains(variable.identifier());
+    if (!mutated) {
+      return result;
+    }
+    double multiplier = mutation.multiplier().equals(QUARTER) || mutation.multiplier().equals(HALF)
+      ? mutation.multiplier().doubleValue()
+      : 1;
+    Interval factor = new Interval(
+      multiplier * mutation.amplifier().min().doubleValue(), multiplier * mutation.amplifier().max().doubleValue()
+    );
+    return result.hull(result.apply(Operand.MULTIPLICATION, factor));
+  }
+
+  /**
+   * Narrows an intermediate result to the values the equation's validation rules allow, or returns null if there are
+   * none.
+   */
+  private static Interval narrow(Interval result, EquationConfig equation) {
+    if (Boolean.TRUE.equals(equation.validate().negativeResults())) {
+      result = result.intersect(new Interval(0, Double.POSITIVE_INFINITY));
+    }
+    if (result != null && Boolean.TRUE.equals(equation.validate().decimalResults())) {
+      result = result.integral();
+    }
+    return result;
+  }
+
+  /**
+   * Counts the operand sequences of a combo that can reach the solution range, and sums up their shares within it.
+   */
+  private static final class Sequences {
+
+    private final EquationConfig equation;
+    private final Operand[] operands;
+    private final Interval[] slotIntervals;
+    private long feasible;
+    private double acceptance;
+
+    Sequences(EquationConfig equation, Operand[] operands, Interval[] slotIntervals) {
+      this.equation = equation;
+      this.operands = operands;
+      this.slotIntervals = slotIntervals;
+    }
+
+    /**
+     * Analyzes all sequences continuing the given partial expression, which ends with the slot before the given one.
+     */
+    void analyzeAll(Partial partial, int slot) {
+      if (slot == slotIntervals.length) {
+        record(partial.result(equation));
+        return;
+      }
+      for (Operand operand : operands) {
+        Partial next = partial.then(operand, slotIntervals[slot], equation);
+        // if the prefix violates the rules already, so do all sequences starting with it
+        if (next != null) {
+          analyzeAll(next, slot + 1);
+        }
+      }
+    }
+
+    /**
+     * Analyzes the given amount of randomly picked sequences, each picked as an index in the mixed radix of the
+     * operands.
+     */
+    void analyzeSampled(SplittableRandom random, long sequences, long samples) {
+      for (long s = 0; s < samples; s++) {
+        long entry = random.nextLong(sequences);
+        Partial partial = Partial.start(slotIntervals[0]);
+        for (int slot = 1; slot < slotIntervals.length && partial != null; slot++) {
+          partial = partial.then(operands[(int) (entry % operands.length)], slotIntervals[slot], equation);
+          entry /= operands.length;
+        }
+        if (partial != null) {
+          record(partial.result(equation));
+        }
+      }
+    }
+
+    private void record(Interval result) {
+      if (result != null && Boolean.TRUE.equals(equation.validate().decimalSolution())) {
+        result = result.integral();
+      }
+      double share = result == null ? 0 : result.shareWithin(equation.solution().range());
+      if (share > 0) {
+        feasible++;
+        acceptance += share;
+      }
+    }
+
+  }
+
+  /**
+   * The possible results of an expression read up to one of its slots: the value of the last slot, and the results
+   * of the operations still open on each precedence level (null if there is none). The next operand closes all open
+   * operations that bind tighter, so that each operation is calculated with the same grouping and validation rules as
+   * the generated expression tree.
+   */
+  private record Partial(
+    Interval[] open,
+    Interval last
+  ) {
+
+    static Partial start(Interval first) {
+      return new Partial(new Interval[OPERANDS.length], first);
+    }
+
+    /**
+     * Continues the expression with the given operand and value, or returns null if an operation it closes can't
+     * have any result allowed by the validation rules.
+     */
+    Partial then(Operand operand, Interval value, EquationConfig equation) {
+      int precedence = precedenceOf(operand);
+      Interval[] newOpen = open.clone();
+      Interval closed = close(newOpen, precedence + 1, equation);
+      if (closed == null) {
+        return null;
+      }
+      if (newOpen[precedence] != null) {
+        closed = narrow(newOpen[precedence].apply(operand, closed), equation);
+        if (closed == null) {
+          return null;
+        }
+      }
+      newOpen[precedence] = closed;
+      return new Partial(newOpen, value);
+    }
+
+    /**
+     * Closes all open operations and returns the result of the whole expression, or null if there is none.
+     */
+    Interval result(EquationConfig equation) {
+      return close(open.clone(), 0, equation);
+    }
+
+    /**
+     * Folds the last value into the open operations from the tightest one up to the given precedence, clearing them.
+     */
+    private Interval close(Interval[] operations, int fromPrecedence, EquationConfig equation) {
+      Interval result = last;
+      for (int precedence = OPERANDS.length - 1; precedence >= fromPrecedence && result != null; precedence--) {
+        if (operations[precedence] != null) {
+          result = narrow(operations[precedence].apply(OPERANDS[precedence], result), equation);
+          operations[precedence] = null;
+        }
+      }
+      return result;
+    }
+
+    private static int precedenceOf(Operand operand) {
+      return switch (operand) {
+        case SUBTRACTION -> 0;
+        case ADDITION -> 1;
+        case MULTIPLICATION -> 2;
+        case DIVISION -> 3;
+      };
+    }
+
+  }
+
+  private record Interval(
+    double min,
+    double max
+  ) {
+
+    Interval apply(Operand operand, Interval right) {
+      return switch (operand) {
+        case ADDITION -> new Interval(min + right.min, max + right.max);
+        case SUBTRACTION -> new Interval(min - right.max, max - right.min);
+        case MULTIPLICATION -> fromProducts(
+          multiply(min, right.min), multiply(min, right.max), multiply(max, right.min), multiply(max, right.max)
+        );
+        case DIVISION -> right.min <= 0 && right.max >= 0
+          // divisor may be (close to) zero, so the result is not bounded
+          ? new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY)
+          : fromProducts(min / right.min, min / right.max, max / right.min, max / right.max);
+      };
+    }
+
+    Interval hull(Interval other) {
+      return new Interval(Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    Interval intersect(Interval other) {
+      double newMin = Math.max(min, other.min);
+      double newMax = Math.min(max, other.max);
+      return newMin > newMax + EPSILON ? null : new Interval(newMin, Math.max(newMin, newMax));
+    }
+
+    /**
+     * Narrows the interval to the whole numbers within it, or returns null if there are none.
+     */
+    Interval integral() {
+      double newMin = Math.ceil(min - EPSILON);
+      double newMax = Math.floor(max + EPSILON);
+      return newMin > newMax ? null : new Interval(newMin, newMax);
+    }
+
+    /**
+     * Returns the share of the interval within the range, assuming results are spread evenly across the interval.
+     */
+    double shareWithin(Range range) {
+      Interval within = intersect(new Interval(range.min().doubleValue(), range.max().doubleValue()));
+      if (within == null) {
+        return 0;
+      } else if (max - min <= EPSILON || Double.isInfinite(max - min)) {
+        return 1;
+      }
+      return Math.max((within.max - within.min) / (max - min), EPSILON);
+    }
+
+    private static double multiply(double left, double right) {
+      // 0 * infinity is NaN, but the bound of the product is 0
+      return left == 0 || right == 0 ? 0 : left * right;
+    }
+
+    private static Interval fromProducts(double a, double b, double c, double d) {
+      if (Double.isNaN(a) || Double.isNaN(b) || Double.isNaN(c) || Double.isNaN(d)) {
+        // e.g. infinity divided by infinity, which could be any value
+        return new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+      }
+      return new Interval(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+    }
+
+  }
+
+}
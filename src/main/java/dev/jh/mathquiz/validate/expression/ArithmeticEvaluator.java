@@ -0,0 +1,27 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+
+import java.math.BigDecimal;
+
+/**
+ * Calculates a single binary operation of an expression.
+ */
+public interface ArithmeticEvaluator {
+
+  BigDecimal evaluate(BigDecimal left, Operand operand, BigDecimal right) throws InvalidExpressionException;
+
+  static ArithmeticEvaluator of(EvaluationMode mode) {
+    if (mode == null) {
+      return NativeArithmeticEvaluator.INSTANCE;
+    }
+    return switch (mode) {
+      case NATIVE -> NativeArithmeticEvaluator.INSTANCE;
+      case EVALEX -> EvalExArithmeticEvaluator.INSTANCE;
+      case CROSS_CHECK -> new CrossCheckingArithmeticEvaluator(
+        NativeArithmeticEvaluator.INSTANCE, EvalExArithmeticEvaluator.INSTANCE
+      );
+    };
+  }
+
+}
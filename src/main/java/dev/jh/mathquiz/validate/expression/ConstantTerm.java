@@ -0,0 +1,14 @@
+package dev.jh.mathquiz.validate.expression;
+
+import java.math.BigDecimal;
+
+public record ConstantTerm(
+  BigDecimal value
+) implements ExpressionTerm {
+
+  @Override
+  public void render(StringBuilder builder, String[] slotTexts) {
+    builder.append(value.toPlainString());
+  }
+
+}
@@ -0,0 +1,58 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+
+/**
+ * Calculates each operation with two evaluators and rejects it if their results differ, so that a new evaluator can be
+ * checked against a reference one on real profiles.
+ */
+public class CrossCheckingArithmeticEvaluator implements ArithmeticEvaluator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CrossCheckingArithmeticEvaluator.class);
+
+  private final ArithmeticEvaluator evaluator;
+  private final ArithmeticEvaluator reference;
+
+  public CrossCheckingArithmeticEvaluator(ArithmeticEvaluator evaluator, ArithmeticEvaluator reference) {
+    this.evaluator = evaluator;
+    this.reference = reference;
+  }
+
+  @Override
+  public BigDecimal evaluate(BigDecimal left, Operand operand, BigDecimal right) throws InvalidExpressionException {
+    BigDecimal result = null;
+    BigDecimal referenceResult = null;
+    InvalidExpressionException exception = null;
+    InvalidExpressionException referenceException = null;
+    try {
+      result = evaluator.evaluate(left, operand, right);
+    } catch (InvalidExpressionException e) {
+      exception = e;
+    }
+    try {
+      referenceResult = reference.evaluate(left, operand, right);
+    } catch (InvalidExpressionException e) {
+      referenceException = e;
+    }
+
+    if (exception != null && referenceException != null) {
+      throw exception;
+    } else if (exception != null || referenceException != null || !result.equals(referenceResult)) {
+      // results are compared including their scale, as the scale decides how results are rendered
+      String message = String.format(
+        "Evaluation of '%s%s%s' differs from reference: '%s' instead of '%s'",
+        left.toPlainString(), operand.symbol(), right.toPlainString(),
+        exception != null ? exception.getMessage() : result.toPlainString(),
+        referenceException != null ? referenceException.getMessage() : referenceResult.toPlainString()
+      );
+      LOG.warn(message);
+      throw new InvalidExpressionException(RejectionReason.ILLEGAL_STATE, message);
+    }
+    return result;
+  }
+
+}
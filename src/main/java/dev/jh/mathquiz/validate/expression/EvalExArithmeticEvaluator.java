@@ -0,0 +1,40 @@
+package dev.jh.mathquiz.validate.expression;
+
+import com.ezylang.evalex.EvaluationException;
+import com.ezylang.evalex.Expression;
+import com.ezylang.evalex.parser.ParseException;
+import dev.jh.mathquiz.process.Operand;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Calculates operations with EvalEx.
+ */
+public class EvalExArithmeticEvaluator implements ArithmeticEvaluator {
+
+  public static final EvalExArithmeticEvaluator INSTANCE = new EvalExArithmeticEvaluator();
+
+  private static final String LEFT = "left";
+  private static final String RIGHT = "right";
+  private static final ThreadLocal<Map<Operand, Expression>> BINARY_EXPRESSIONS =
+    ThreadLocal.withInitial(() -> new EnumMap<>(Operand.class));
+
+  private EvalExArithmeticEvaluator() {
+  }
+
+  @Override
+  public BigDecimal evaluate(BigDecimal left, Operand operand, BigDecimal right) throws InvalidExpressionException {
+    // parsed binary expressions are reused with different values, so that nothing needs to be parsed per calculation
+    Expression expression = BINARY_EXPRESSIONS.get().computeIfAbsent(
+      operand, o -> new Expression(LEFT + o.symbol() + RIGHT)
+    );
+    try {
+      return expression.with(LEFT, left).and(RIGHT, right).evaluate().getNumberValue();
+    } catch (EvaluationException | ParseException | ArithmeticException e) {
+      throw new InvalidExpressionException("Failed to solve expression term", e);
+    }
+  }
+
+}
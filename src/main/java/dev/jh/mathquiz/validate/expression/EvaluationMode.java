@@ -0,0 +1,42 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.util.StringUtil;
+
+import java.util.Arrays;
+
+/**
+ * Decides how the single arithmetic operations of an expression are calculated.
+ */
+public enum EvaluationMode {
+
+  /**
+   * Calculates with {@link java.math.BigDecimal} directly, see {@link NativeArithmeticEvaluator}.
+   */
+  NATIVE("native"),
+  /**
+   * Calculates with EvalEx, the way expressions were solved originally. Slower, but useful as a reference.
+   */
+  EVALEX("evalex"),
+  /**
+   * Calculates natively and with EvalEx and fails on any difference between both.
+   */
+  CROSS_CHECK("cross-check");
+
+  private final String text;
+
+  EvaluationMode(String text) {
+    this.text = text;
+  }
+
+  public String text() {
+    return text;
+  }
+
+  public static EvaluationMode byText(String text) {
+    if (StringUtil.hasNoContent(text)) {
+      return null;
+    }
+    return Arrays.stream(EvaluationMode.values()).filter(m -> text.equals(m.text())).findFirst().orElse(null);
+  }
+
+}
@@ -0,0 +1,238 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An expression tree compiled into flat postfix code, for solving the same expression many times. Each instruction
+ * either pushes a value (of a slot, or of a constant from the constant pool) or applies an operand to the two values on
+ * top of the stack. Operations with more than two child terms apply their operand once per additional child, from left
+ * to right, just like the tree is solved.
+ * <p>
+ * Whether a subtraction is a self-subtraction only depends on the values of the leaves it compares, as the structure of
+ * the tree is fixed. These comparisons are resolved when compiling: for each subtraction, the alternatives of leaf
+ * pairs that all have to be equal (see {@link #selfSubtraction}).
+ */
+final class ExpressionCode {
+
+  static final int SLOT = 0;
+  static final int CONSTANT = 1;
+  static final int APPLY = 2;
+
+  private static final Operand[] OPERANDS = Operand.values();
+
+  // kind in the lowest two bits, argument (slot, constant or operand and self-subtraction check) above
+  private final int[] instructions;
+  // constants as reduced fractions, null if any of them doesn't fit
+  private final long[] constantNumerators;
+  private final long[] constantDenominators;
+  private final int[][][] selfSubtractions;
+  private final int maxDepth;
+
+  private ExpressionCode(
+    int[] instructions, BigDecimal[] constants, int[][][] selfSubtractions, int maxDepth
+  ) {
+    this.instructions = instructions;
+    this.selfSubtractions = selfSubtractions;
+    this.maxDepth = maxDepth;
+
+    long[] numerators = new long[constants.length];
+    long[] denominators = new long[constants.length];
+    MutableFraction fraction = new MutableFraction();
+    boolean exact = true;
+    for (int i = 0; i < constants.length && exact; i++) {
+      exact = fraction.set(constants[i]);
+      numerators[i] = fraction.numerator;
+      denominators[i] = fraction.denominator;
+    }
+    this.constantNumerators = exact ? numerators : null;
+    this.constantDenominators = exact ? denominators : null;
+  }
+
+  static ExpressionCode compile(ExpressionTerm expression) {
+    Compiler compiler = new Compiler(countInstructions(expression));
+    compiler.emit(expression);
+    return new ExpressionCode(
+      compiler.instructions, compiler.constants.toArray(new BigDecimal[0]),
+      compiler.selfSubtractions.toArray(new int[0][][]), compiler.maxDepth
+    );
+  }
+
+  int length() {
+    return instructions.length;
+  }
+
+  /**
+   * Returns the maximum amount of values on the stack while solving the expression.
+   */
+  int maxDepth() {
+    return maxDepth;
+  }
+
+  int kind(int instruction) {
+    return instructions[instruction] & 3;
+  }
+
+  int slot(int instruction) {
+    return instructions[instruction] >>> 2;
+  }
+
+  int constant(int instruction) {
+    return instructions[instruction] >>> 2;
+  }
+
+  Operand operand(int instruction) {
+    return OPERANDS[(instructions[instruction] >>> 2) & 3];
+  }
+
+  /**
+   * Returns whether all constants fit into fractions of {@code long}s.
+   */
+  boolean isExact() {
+    return constantNumerators != null;
+  }
+
+  long constantNumerator(int constant) {
+    return constantNumerators[constant];
+  }
+
+  long constantDenominator(int constant) {
+    return constantDenominators[constant];
+  }
+
+  /**
+   * Returns the self-subtraction check of an applying instruction, or null if it can never be a self-subtraction. The
+   * check is a self-subtraction if any of its alternatives is: each alternative lists pairs of leaves (a slot
+   * {@code s} as {@code s}, a constant {@code c} as {@code -c - 1}) as {@code [left, right, left, right, ...]}, and
+   * all of them have to have the same value.
+   */
+  int[][] selfSubtraction(int instruction) {
+    int check = instructions[instruction] >>> 4;
+    return check == 0 ? null : selfSubtractions[check - 1];
+  }
+
+  private static int countInstructions(ExpressionTerm term) {
+    if (!(term instanceof OperationTerm operation)) {
+      return 1;
+    }
+    int result = operation.terms().size() - 1;
+    for (ExpressionTerm child : operation.terms()) {
+      result += countInstructions(child);
+    }
+    return result;
+  }
+
+  private static final class Compiler {
+
+    private final int[] instructions;
+    private final List<BigDecimal> constants = new ArrayList<>();
+    private final List<int[][]> selfSubtractions = new ArrayList<>();
+    private int[] pairs = new int[8];
+    private int pairCount;
+    private int length;
+    private int depth;
+    private int maxDepth;
+
+    Compiler(int length) {
+      this.instructions = new int[length];
+    }
+
+    void emit(ExpressionTerm term) {
+      if (term instanceof SlotTerm slot) {
+        push(slot.slot() << 2 | SLOT);
+      } else if (term instanceof ConstantTerm constant) {
+        constants.add(constant.value());
+        push((constants.size() - 1) << 2 | CONSTANT);
+      } else {
+        OperationTerm operation = (OperationTerm) term;
+        emit(operation.terms().get(0));
+        for (int i = 1; i < operation.terms().size(); i++) {
+          emit(operation.terms().get(i));
+          int check = operation.operand() == Operand.SUBTRACTION ? compileSelfSubtraction(operation, i) : 0;
+          instructions[length++] = (check << 2 | operation.operand().ordinal()) << 2 | APPLY;
+          depth--;
+        }
+      }
+    }
+
+    private void push(int instruction) {
+      instructions[length++] = instruction;
+      maxDepth = Math.max(maxDepth, ++depth);
+    }
+
+    /**
+     * Resolves {@link ExpressionValidator}'s self-subtraction check of the child term at the given index to the leaf
+     * pairs it compares, returning the (1-based) index of the check or 0 if the child can never be one.
+     */
+    private int compileSelfSubtraction(OperationTerm term, int index) {
+      ExpressionTerm previousChildTerm = term.terms().get(index - 1);
+      ExpressionTerm currentChildTerm = term.terms().get(index);
+
+      List<int[]> alternatives = new ArrayList<>(2);
+      addSameValuePairs(previousChildTerm, currentChildTerm, alternatives);
+      if (previousChildTerm instanceof OperationTerm operation
+        && !operation.grouped() && Operand.ADDITION.equals(operation.operand())) {
+        addSameValuePairs(operation.terms().get(operation.terms().size() - 1), currentChildTerm, alternatives);
+      }
+      if (alternatives.isEmpty()) {
+        return 0;
+      }
+      selfSubtractions.add(alternatives.toArray(new int[0][]));
+      return selfSubtractions.size();
+    }
+
+    private void addSameValuePairs(ExpressionTerm left, ExpressionTerm right, List<int[]> alternatives) {
+      pairCount = 0;
+      if (collectSameValuePairs(left, right)) {
+        alternatives.add(Arrays.copyOf(pairs, pairCount));
+      }
+    }
+
+    /**
+     * Collects the leaf pairs that have to be equal for both terms to render the same expression, see
+     * {@code ExpressionValidator#isSameValue}. Returns false if they never do.
+     */
+    private boolean collectSameValuePairs(ExpressionTerm left, ExpressionTerm right) {
+      if (left instanceof OperationTerm leftOperation) {
+        if (!(right instanceof OperationTerm rightOperation)
+          || leftOperation.operand() != rightOperation.operand()
+          || leftOperation.grouped() != rightOperation.grouped()
+          || leftOperation.terms().size() != rightOperation.terms().size()) {
+          return false;
+        }
+        for (int i = 0; i < leftOperation.terms().size(); i++) {
+          if (!collectSameValuePairs(leftOperation.terms().get(i), rightOperation.terms().get(i))) {
+            return false;
+          }
+        }
+        return true;
+      }
+      if (right instanceof OperationTerm) {
+        return false;
+      }
+      if (left instanceof ConstantTerm leftConstant && right instanceof ConstantTerm rightConstant) {
+        return leftConstant.value().compareTo(rightConstant.value()) == 0;
+      }
+      if (pairCount + 2 > pairs.length) {
+        pairs = Arrays.copyOf(pairs, pairs.length * 2);
+      }
+      pairs[pairCount++] = leafReference(left);
+      pairs[pairCount++] = leafReference(right);
+      return true;
+    }
+
+    private int leafReference(ExpressionTerm term) {
+      if (term instanceof SlotTerm slot) {
+        return slot.slot();
+      }
+      constants.add(((ConstantTerm) term).value());
+      return -constants.size();
+    }
+
+  }
+
+}
@@ -3,55 +3,75 @@ package dev.jh.mathquiz.validate.expression;
 import dev.jh.mathquiz.process.Operand;
 import dev.jh.mathquiz.util.ExpressionUtil;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 public class ExpressionNodeConverter {
 
   public static final String OPEN_PARENTHESES = "(";
   public static final String CLOSE_PARANTHESES = ")";
-  private static final String EQUALS = "=";
+  private static final char EQUALS = '=';
 
-  public ExpressionNode toExpressionNode(String equation) {
+  /**
+   * Parses the expression of an equation (everything before its first equals sign) into a tree, see
+   * {@link ExpressionParser}. Returns null if there is no expression.
+   */
+  public ExpressionNode toExpressionNode(String equation) throws InvalidExpressionException {
     if (equation == null || equation.isBlank()) {
       return null;
     }
-    String expression = equation.contains(EQUALS) ? equation.split(EQUALS)[0] : equation;
-    return expression != null && !expression.isBlank() ? toExpressionNode(expression, Operand.SUBTRACTION) : null;
+    int equalsIndex = equation.indexOf(EQUALS);
+    String expression = equalsIndex < 0 ? equation : equation.substring(0, equalsIndex);
+    return !expression.isBlank() ? new ExpressionParser(expression).parse() : null;
   }
 
-  public ExpressionNode toExpressionNode(String expression, Operand operand) {
-    if (ExpressionUtil.isIsolatedValue(expression)) {
-      // leaf level has been reached -> return the node with just the expression as the value,
-      // and no more sub-nodes and operand
-      return new ExpressionNode(expression, null, null);
+  /**
+   * Converts a parsed expression tree into a typed expression tree. Leaf values have to be numbers.
+   */
+  public ExpressionTerm toExpressionTerm(ExpressionNode node) throws InvalidExpressionException {
+    if (!node.hasNodes()) {
+      try {
+        return new ConstantTerm(new BigDecimal(node.value()));
+      } catch (NumberFormatException e) {
+        throw new InvalidExpressionException(String.format("Expression node '%s' is not a number", node.value()), e);
+      }
     }
-
-    if (operand == null) {
-      // expression has been split by all possible operands -> assume the remaining expression is a sub-expression,
-      // wrapped in parentheses. unwrap and process it again, beginning with the first operand again
-      String subExpression = expression.substring(1, expression.length() - 1);
-      return toExpressionNode(subExpression, Operand.SUBTRACTION);
+    List<ExpressionTerm> terms = new ArrayList<>(node.nodes().size());
+    for (ExpressionNode childNode : node.nodes()) {
+      terms.add(toExpressionTerm(childNode));
     }
+    return new OperationTerm(node.operand(), terms, ExpressionUtil.isSubExpression(node.value()));
+  }
 
-    // the expression is not a sub-expression, and not a single value. it can still be split into more sub-nodes
-    // by any of the remaining operands
-
-    // attempt to split expression with current operand
-    List<String> parts = splitExpressionBy(expression, operand);
-    Operand nextOperand = getNextOperand(operand);
-    LinkedList<ExpressionNode> nodes = new LinkedList<>();
+  /**
+   * Builds the typed expression tree for the given terms, each connected to the next one by the operand at the same
+   * index. Terms are grouped the same way {@link #toExpressionNode(String)} would group the rendered expression.
+   */
+  public ExpressionTerm toExpressionTerm(List<ExpressionTerm> terms, List<Operand> operands) {
+    return toExpressionTerm(terms, operands, Operand.SUBTRACTION);
+  }
 
-    if (parts.size() == 1) {
-      // if the split didn't do anything (e.g. 4/2 split by MULTIPLY), ignore it,
-      // and attempt ti with the next operand
-      return toExpressionNode(expression, nextOperand);
+  private ExpressionTerm toExpressionTerm(List<ExpressionTerm> terms, List<Operand> operands, Operand operand) {
+    if (terms.size() == 1) {
+      return terms.get(0);
+    }
+    if (!operands.contains(operand)) {
+      return toExpressionTerm(terms, operands, getNextOperand(operand));
     }
 
-    // further process each part using the next operand and assemble the final tree from bottom-up
-    parts.forEach(part -> nodes.add(toExpressionNode(part, nextOperand)));
-    return new ExpressionNode(expression, operand, nodes);
+    // split into parts at each occurrence of the current operand, and further process each part using the next operand
+    List<ExpressionTerm> parts = new ArrayList<>();
+    int partStart = 0;
+    for (int i = 0; i <= operands.size(); i++) {
+      if (i == operands.size() || operands.get(i) == operand) {
+        parts.add(toExpressionTerm(
+          terms.subList(partStart, i + 1), operands.subList(partStart, i), getNextOperand(operand)
+        ));
+        partStart = i + 1;
+      }
+    }
+    return new OperationTerm(operand, parts, false);
   }
 
   private Operand getNextOperand(Operand operand) {
@@ -63,40 +83,4 @@ public class ExpressionNodeConverter {
     };
   }
 
-  private List<String> splitExpressionBy(String expression, Operand operand) {
-    if (expression == null || expression.isBlank() || operand == null) {
-      return new ArrayList<>();
-    }
-
-    List<String> result = new LinkedList<>();
-    int lastOperandIndex = 0;
-    int subExpressionLevel = 0;
-
-    for (int i = 0; i < expression.length(); i++) {
-      String currentSymbol = String.valueOf(expression.charAt(i));
-
-      if (OPEN_PARENTHESES.equals(currentSymbol)) {
-        subExpressionLevel++;
-      } else if (CLOSE_PARANTHESES.equals(currentSymbol)) {
-        subExpressionLevel--;
-      }
-
-      boolean isLastChar = i == expression.length() - 1;
-      boolean isValidSplitIndex = operand.symbol().equals(currentSymbol) && subExpressionLevel == 0;
-
-      if (isLastChar) {
-        result.add(expression.substring(lastOperandIndex, i + 1));
-      } else if (isValidSplitIndex) {
-        result.add(expression.substring(lastOperandIndex, i));
-        lastOperandIndex = i + 1;
-      }
-    }
-
-    if (result.isEmpty()) {
-      result.add(expression);
-    }
-
-    return result;
-  }
-
 }
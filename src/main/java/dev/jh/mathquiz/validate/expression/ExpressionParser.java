@@ -0,0 +1,113 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+
+import java.util.LinkedList;
+
+/**
+ * Parses an expression into an {@link ExpressionNode} tree with precedence climbing, reading each character once.
+ * Operands bind from subtraction (loosest) over addition and multiplication to division (tightest), and successive
+ * operations with the same operand form a single node, so {@code 8-2+1} is parsed as {@code 8-(2+1)}. Everything
+ * between operands and parentheses is a value. Each node's value is the part of the expression it was parsed from,
+ * without the parentheses around it - except for values, which keep them.
+ */
+final class ExpressionParser {
+
+  // operands by precedence, from loosest to tightest
+  private static final Operand[] OPERANDS = {
+    Operand.SUBTRACTION, Operand.ADDITION, Operand.MULTIPLICATION, Operand.DIVISION
+  };
+
+  private final String expression;
+  private int position;
+  // start and end of the node parsed last, including its parentheses
+  private int nodeStart;
+  private int nodeEnd;
+
+  ExpressionParser(String expression) {
+    this.expression = expression;
+  }
+
+  ExpressionNode parse() throws InvalidExpressionException {
+    ExpressionNode result = parse(0);
+    if (position < expression.length()) {
+      throw invalid("Unexpected '%c'", position);
+    }
+    return result;
+  }
+
+  private ExpressionNode parse(int minPrecedence) throws InvalidExpressionException {
+    ExpressionNode result = parsePrimary();
+    int start = nodeStart;
+    int precedence = precedenceAt(position);
+    while (precedence >= minPrecedence) {
+      LinkedList<ExpressionNode> nodes = new LinkedList<>();
+      nodes.add(result);
+      while (precedenceAt(position) == precedence) {
+        position++;
+        nodes.add(parse(precedence + 1));
+      }
+      result = new ExpressionNode(expression.substring(start, nodeEnd), OPERANDS[precedence], nodes);
+      nodeStart = start;
+      // all tighter operands were consumed by the child nodes, so the next one (if any) is looser
+      precedence = precedenceAt(position);
+    }
+    return result;
+  }
+
+  private ExpressionNode parsePrimary() throws InvalidExpressionException {
+    int start = position;
+    if (start < expression.length() && expression.charAt(start) == '(') {
+      position++;
+      ExpressionNode result = parse(0);
+      if (position == expression.length() || expression.charAt(position) != ')') {
+        throw invalid("Missing closing parenthesis for '%c'", start);
+      }
+      position++;
+      nodeStart = start;
+      nodeEnd = position;
+      // like before parsing in a single pass, a value in parentheses keeps them (and isn't a number)
+      return result.hasNodes() ? result : new ExpressionNode(expression.substring(start, position), null, null);
+    }
+
+    while (position < expression.length() && isValueCharacter(expression.charAt(position))) {
+      position++;
+    }
+    if (position == start) {
+      throw position == expression.length()
+        ? invalid("Missing value at the end", start)
+        : invalid("Expected value instead of '%c'", start);
+    }
+    nodeStart = start;
+    nodeEnd = position;
+    return new ExpressionNode(expression.substring(start, position), null, null);
+  }
+
+  private int precedenceAt(int index) {
+    return index == expression.length() ? -1 : precedenceOf(expression.charAt(index));
+  }
+
+  private static int precedenceOf(char character) {
+    return switch (character) {
+      case '-' -> 0;
+      case '+' -> 1;
+      case '*' -> 2;
+      case '/' -> 3;
+      default -> -1;
+    };
+  }
+
+  private static boolean isValueCharacter(char character) {
+    return character != '(' && character != ')' && precedenceOf(character) < 0;
+  }
+
+  private InvalidExpressionException invalid(String description, int index) {
+    String subject = index < expression.length()
+      ? String.format(description, expression.charAt(index))
+      : description;
+    return new InvalidExpressionException(String.format(
+      "%s at position %d of expression '%s'", subject, index, expression
+    ));
+  }
+
+}
@@ -0,0 +1,21 @@
+package dev.jh.mathquiz.validate.expression;
+
+/**
+ * Typed expression tree. Variable values are not part of the tree, but referenced by slot, so that the same tree can
+ * be validated with different values and rendered with either identifiers or values.
+ */
+public sealed interface ExpressionTerm permits ConstantTerm, SlotTerm, OperationTerm {
+
+  void render(StringBuilder builder, String[] slotTexts);
+
+  default String render(String[] slotTexts) {
+    StringBuilder builder = new StringBuilder();
+    render(builder, slotTexts);
+    return builder.toString();
+  }
+
+  default boolean containsSlot(int slot) {
+    return false;
+  }
+
+}
@@ -1,34 +1,51 @@
 package dev.jh.mathquiz.validate.expression;
 
-import com.ezylang.evalex.EvaluationException;
-import com.ezylang.evalex.Expression;
-import com.ezylang.evalex.parser.ParseException;
 import dev.jh.mathquiz.process.Operand;
-import dev.jh.mathquiz.util.ExpressionUtil;
 import dev.jh.mathquiz.util.NumberUtil;
 import dev.jh.mathquiz.util.StringUtil;
 import dev.jh.mathquiz.util.type.Range;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
 
 public class ExpressionValidator {
 
+  private static final ThreadLocal<MutableFraction> FRACTIONS = ThreadLocal.withInitial(MutableFraction::new);
+  // self-subtractions have a fixed message, so a single instance can be thrown for all of them
+  private static final InvalidExpressionException SELF_SUBTRACTION =
+    new InvalidExpressionException(RejectionReason.SELF_SUBTRACTION, () -> "Found self-subtraction");
+
   private final ExpressionNodeConverter expressionNodeConverter;
 
+  private ArithmeticEvaluator evaluator = NativeArithmeticEvaluator.INSTANCE;
+  private ResultCache resultCache;
   private boolean checkSelfDivision;
   private boolean checkSelfSubtraction;
   private boolean checkNegativeResults;
   private boolean checkDecimalResults;
   private boolean checkDecimalSolution;
   private Range solutionRange;
+  // solution range as fractions (min numerator, denominator, max numerator, denominator), null if it doesn't fit
+  private long[] exactSolutionRange;
 
   public ExpressionValidator(ExpressionNodeConverter expressionNodeConverter) {
     this.expressionNodeConverter = expressionNodeConverter;
   }
 
+  public ExpressionValidator evaluateWith(ArithmeticEvaluator evaluator) {
+    this.evaluator = evaluator;
+    return this;
+  }
+
+  /**
+   * Looks up the results of the exact fast path in the given cache (which may be shared with other validators), or
+   * calculates them every time if it's null.
+   */
+  public ExpressionValidator cacheResultsIn(ResultCache resultCache) {
+    this.resultCache = resultCache;
+    return this;
+  }
+
   public ExpressionValidator prohibitSelfDivision(boolean value) {
     this.checkSelfDivision = value;
     return this;
@@ -56,6 +73,12 @@ public class ExpressionValidator {
 
   public ExpressionValidator keepWithinSolutionRange(Range range) {
     solutionRange = range;
+    exactSolutionRange = null;
+    MutableFraction min = new MutableFraction();
+    MutableFraction max = new MutableFraction();
+    if (range != null && min.set(range.min()) && max.set(range.max())) {
+      exactSolutionRange = new long[] {min.numerator, min.denominator, max.numerator, max.denominator};
+    }
     return this;
   }
 
@@ -72,142 +95,394 @@ public class ExpressionValidator {
     if (expressionTree.nodes() == null || expressionTree.nodes().isEmpty()) {
       if (expressionTree.value() == null || expressionTree.value().isEmpty()) {
         throw new InvalidExpressionException("Expression tree is a single, invalid node without value");
-      } else if (!ExpressionUtil.isIsolatedValue(expressionTree.value())) {
-        throw new InvalidExpressionException(String.format(
-          "Expression node '%s' cannot be a leaf note and contain an expression as a value at the same time",
-          expressionTree.value()
-        ));
-      } else {
-        // root node is isolated value with no child nodes
-        return new BigDecimal(expressionTree.value());
       }
+      // root node is isolated value with no child nodes
+      return new BigDecimal(expressionTree.value());
+    }
+
+    return solveAndValidate(expressionNodeConverter.toExpressionTerm(expressionTree), new BigDecimal[0]);
+  }
+
+  /**
+   * Solves and validates a typed expression tree, where each slot is replaced with the value at the same index.
+   */
+  public BigDecimal solveAndValidate(
+    ExpressionTerm expression, BigDecimal[] slotValues
+  ) throws InvalidExpressionException {
+    if (!(expression instanceof OperationTerm operation)) {
+      // root term is isolated value
+      return solveTerm(expression, slotValues);
+    }
+
+    // try the exact fast path first, only falling back to BigDecimal if its values don't fit
+    boolean exact = evaluator == NativeArithmeticEvaluator.INSTANCE
+      && (solutionRange == null || exactSolutionRange != null);
+    MutableFraction fraction = FRACTIONS.get();
+    if (exact && solveExactly(operation, slotValues, fraction, true)) {
+      validateSolution(fraction);
+      return fraction.toBigDecimal();
     }
 
     // check if overall solution is within range
-    BigDecimal result = solveNode(expressionTree);
+    BigDecimal result = solveOperation(operation, slotValues, true);
     if (solutionRange != null && !NumberUtil.isWithinRange(solutionRange, result)) {
-      throw new InvalidExpressionException(String.format(
-        "Result of expression '%s' (%f) is outside the defined solution range (%s-%s)",
-        expression, result.floatValue(), solutionRange.min().toPlainString(), solutionRange.max().toPlainString())
-      );
+      throw outsideSolutionRange("Result", result);
     }
 
     // check if overall solution is decimal result
     if (checkDecimalSolution && isDecimalResult(result)) {
-      throw new InvalidExpressionException(String.format(
-        "Expression '%s' equates to decimal result: '%s", expression, result.toPlainString()
+      throw new InvalidExpressionException(RejectionReason.DECIMAL_SOLUTION, () -> String.format(
+        "Expression equates to decimal result: '%s", result.toPlainString()
       ));
     }
 
     return result;
   }
 
-  private BigDecimal solveNode(ExpressionNode node) throws InvalidExpressionException {
-    BigDecimal result = null;
-    int index = 0;
+  /**
+   * Validates an expression for many slot value assignments at once: each slot's values are held in a column, and each
+   * operation is applied to all rows in one loop. Returns a bitmask of the rows that pass validation, where row
+   * {@code r} is bit {@code r % 64} of word {@code r / 64}. Rows are calculated with exact fractions and the same rules
+   * as {@link #solveAndValidate(ExpressionTerm, BigDecimal[])}; rows the fractions can't decide (e.g. after an
+   * overflow) are validated one by one.
+   */
+  public long[] validateBatch(ExpressionTerm expression, long[][] slotColumns, int rows) {
+    long[] result = new long[(rows + 63) >>> 6];
+    long[] undecided = new long[result.length];
+    boolean exact = evaluator == NativeArithmeticEvaluator.INSTANCE
+      && (solutionRange == null || exactSolutionRange != null);
+    if (exact && expression instanceof OperationTerm operation) {
+      setRows(result, rows);
+      new Batch(slotColumns, rows, result, undecided).solveAndValidate(ExpressionCode.compile(operation));
+    } else {
+      setRows(undecided, rows);
+    }
 
-    if (node.hasNodes() && checkSelfDivision && isSelfSubtraction(node)) {
-      throw new InvalidExpressionException(String.format("Found self-subtraction at node '%s'", node.value()));
+    BigDecimal[] slotValues = new BigDecimal[slotColumns.length];
+    for (int row = nextRow(undecided, 0); row >= 0; row = nextRow(undecided, row + 1)) {
+      for (int slot = 0; slot < slotColumns.length; slot++) {
+        slotValues[slot] = BigDecimal.valueOf(slotColumns[slot][row]);
+      }
+      try {
+        solveAndValidate(expression, slotValues);
+        result[row >>> 6] |= 1L << row;
+      } catch (InvalidExpressionException e) {
+        // row is not valid
+      }
     }
+    return result;
+  }
 
-    // calculate each child node together successively
-    while (index < node.nodes().size()) {
-      ExpressionNode nextNode;
+  /**
+   * Returns the index of the first row set in the bitmask from the given row on, or -1 if there is none.
+   */
+  public static int nextRow(long[] rows, int from) {
+    int word = from >>> 6;
+    if (word >= rows.length) {
+      return -1;
+    }
+    long bits = rows[word] & (-1L << from);
+    while (bits == 0) {
+      if (++word == rows.length) {
+        return -1;
+      }
+      bits = rows[word];
+    }
+    return (word << 6) + Long.numberOfTrailingZeros(bits);
+  }
 
-      try {
-        nextNode = node.nodes().get(index + 1);
-      } catch (IndexOutOfBoundsException e) {
-        // if no next node available -> loop finished
-        break;
+  private static void setRows(long[] bitmask, int rows) {
+    for (int row = 0; row < rows; row += 64) {
+      bitmask[row >>> 6] = rows - row >= 64 ? -1L : (1L << (rows - row)) - 1;
+    }
+  }
+
+  private void validateSolution(MutableFraction result) throws InvalidExpressionException {
+    // check if overall solution is within range
+    if (solutionRange != null && !isWithinSolutionRange(result)) {
+      throw outsideSolutionRange("Result", result.toBigDecimal());
+    }
+
+    // check if overall solution is decimal result
+    if (checkDecimalSolution && !result.isInteger()) {
+      BigDecimal value = result.toBigDecimal();
+      throw new InvalidExpressionException(RejectionReason.DECIMAL_SOLUTION, () -> String.format(
+        "Expression equates to decimal result: '%s", value.toPlainString()
+      ));
+    }
+  }
+
+  private BigDecimal solveTerm(ExpressionTerm term, BigDecimal[] slotValues) throws InvalidExpressionException {
+    if (term instanceof ConstantTerm constant) {
+      return constant.value();
+    } else if (term instanceof SlotTerm slot) {
+      return slotValues[slot.slot()];
+    }
+    return solveOperation((OperationTerm) term, slotValues, false);
+  }
+
+  /**
+   * Solves an operation in a single pass over its child terms, rejecting it at the first rule it violates: each child
+   * is checked against the one before it for self-subtraction and each intermediate result is checked as soon as it's
+   * calculated. For the root operation, the partial result is also checked against the solution range once the
+   * remaining child terms can only move it further away from it.
+   */
+  private BigDecimal solveOperation(
+    OperationTerm term, BigDecimal[] slotValues, boolean root
+  ) throws InvalidExpressionException {
+    Operand operand = term.operand();
+    int boundedFrom = root ? findBoundedFrom(term, slotValues) : Integer.MAX_VALUE;
+
+    // calculate each child term together successively
+    BigDecimal result = solveTerm(term.terms().get(0), slotValues);
+    for (int i = 1; i < term.terms().size(); i++) {
+      if (checkSelfSubtraction && isSelfSubtraction(term, i, slotValues)) {
+        throw SELF_SUBTRACTION;
       }
 
-      Operand operand = node.operand();
-      String rightSide = nextNode.hasNodes() ? solveNode(nextNode).toPlainString() : nextNode.value();
-      String leftSide;
+      BigDecimal left = result;
+      BigDecimal right = solveTerm(term.terms().get(i), slotValues);
 
-      if (result == null) {
-        // first calculation: calculate current and next node
-        ExpressionNode currentNode = node.nodes().get(index);
-        leftSide = currentNode.hasNodes() ? solveNode(currentNode).toPlainString() : currentNode.value();
-      } else {
-        // subsequent calculation: calculate result and next node
-        leftSide = result.toPlainString();
+      if (checkSelfDivision && isSelfDivision(left, operand, right)) {
+        throw new InvalidExpressionException(RejectionReason.SELF_DIVISION, () -> String.format(
+          "Found self-division: '%s%s%s'", left.toPlainString(), operand.symbol(), right.toPlainString()
+        ));
       }
 
-      String expressionString = leftSide + operand.symbol() + rightSide;
+      BigDecimal value = evaluator.evaluate(left, operand, right);
 
-      if (checkSelfDivision && isSelfDivision(leftSide, operand, rightSide)) {
-        throw new InvalidExpressionException(String.format(
-          "Found self-division at node '%s': '%s'", node.value(), expressionString
+      if (checkNegativeResults && isNegativeResult(value)) {
+        throw new InvalidExpressionException(RejectionReason.NEGATIVE_RESULT, () -> String.format(
+          "Found negative result: '%s%s%s=%s'",
+          left.toPlainString(), operand.symbol(), right.toPlainString(), value.toPlainString()
         ));
       }
 
-      try {
-        Expression expression = new Expression(expressionString);
-        result = expression.evaluate().getNumberValue();
-        index++;
-      } catch (EvaluationException | ParseException e) {
-        throw new InvalidExpressionException("Failed to solve expression node", e);
+      if (checkDecimalResults && isDecimalResult(value)) {
+        throw new InvalidExpressionException(RejectionReason.DECIMAL_RESULT, () -> String.format(
+          "Found decimal result: '%s%s%s=%s'",
+          left.toPlainString(), operand.symbol(), right.toPlainString(), value.toPlainString()
+        ));
       }
 
-      String equationString = expressionString + "=" + result;
+      boolean unreachable = i + 1 >= boundedFrom && i + 1 < term.terms().size() && (
+        operand == Operand.ADDITION && value.compareTo(solutionRange.max()) > 0
+          || operand == Operand.SUBTRACTION && value.compareTo(solutionRange.min()) < 0
+      );
+      if (unreachable) {
+        throw outsideSolutionRange("Partial result", value);
+      }
+      result = value;
+    }
 
-      if (checkNegativeResults && isNegativeResult(result)) {
-        throw new InvalidExpressionException(String.format(
-          "Found negative result at node '%s': '%s'", node.value(), equationString
-        ));
+    return result;
+  }
+
+  /**
+   * Solves an operation like {@link #solveOperation}, with the same checks in the same order, but calculates with exact
+   * fractions of {@code long}s, which doesn't allocate. Returns false if a value doesn't fit or the BigDecimal path
+   * would have rounded a result, after which it has to take over; the result is left in the given fraction otherwise.
+   */
+  private boolean solveExactly(
+    OperationTerm term, BigDecimal[] slotValues, MutableFraction fraction, boolean root
+  ) throws InvalidExpressionException {
+    Operand operand = term.operand();
+    int boundedFrom = root ? findBoundedFrom(term, slotValues) : Integer.MAX_VALUE;
+
+    // calculate each child term together successively
+    if (!solveTermExactly(term.terms().get(0), slotValues, fraction)) {
+      return false;
+    }
+    for (int i = 1; i < term.terms().size(); i++) {
+      if (checkSelfSubtraction && isSelfSubtraction(term, i, slotValues)) {
+        throw SELF_SUBTRACTION;
       }
 
-      if (checkDecimalResults && isDecimalResult(result)) {
-        throw new InvalidExpressionException(String.format(
-          "Found decimal result at node '%s': '%s", node.value(), equationString
+      long leftNumerator = fraction.numerator;
+      long leftDenominator = fraction.denominator;
+      if (!solveTermExactly(term.terms().get(i), slotValues, fraction)) {
+        return false;
+      }
+      long rightNumerator = fraction.numerator;
+      long rightDenominator = fraction.denominator;
+
+      fraction.numerator = leftNumerator;
+      fraction.denominator = leftDenominator;
+      int flags = apply(fraction, operand, rightNumerator, rightDenominator);
+      if (checkSelfDivision && (flags & ResultCache.SELF_DIVISION) != 0) {
+        throw new InvalidExpressionException(RejectionReason.SELF_DIVISION, () -> String.format(
+          "Found self-division: '%s%s%s'", MutableFraction.toBigDecimal(leftNumerator, leftDenominator).toPlainString(),
+          operand.symbol(), MutableFraction.toBigDecimal(rightNumerator, rightDenominator).toPlainString()
         ));
       }
+
+      if ((flags & ResultCache.UNREPRESENTABLE) != 0) {
+        // overflow or division by zero
+        return false;
+      }
+
+      if (checkNegativeResults && (flags & ResultCache.NEGATIVE) != 0) {
+        throw invalidResult(
+          RejectionReason.NEGATIVE_RESULT, "Found negative result", leftNumerator, leftDenominator, operand,
+          rightNumerator, rightDenominator, fraction
+        );
+      }
+
+      if (checkDecimalResults && (flags & ResultCache.DECIMAL) != 0) {
+        throw invalidResult(
+          RejectionReason.DECIMAL_RESULT, "Found decimal result", leftNumerator, leftDenominator, operand,
+          rightNumerator, rightDenominator, fraction
+        );
+      }
+
+      if ((flags & ResultCache.NON_TERMINATING) != 0) {
+        // the BigDecimal path rounds this result, so the following calculations are no longer exact
+        return false;
+      }
+
+      boolean unreachable = i + 1 >= boundedFrom && i + 1 < term.terms().size() && (
+        operand == Operand.ADDITION && fraction.compareTo(exactSolutionRange[2], exactSolutionRange[3]) > 0
+          || operand == Operand.SUBTRACTION && fraction.compareTo(exactSolutionRange[0], exactSolutionRange[1]) < 0
+      );
+      if (unreachable) {
+        throw outsideSolutionRange("Partial result", fraction.toBigDecimal());
+      }
     }
 
-    return result;
+    return true;
   }
 
-  private boolean isSelfDivision(String left, Operand operand, String right) {
-     return operand.equals(Operand.DIVISION) && left.equals(right);
+  private boolean solveTermExactly(
+    ExpressionTerm term, BigDecimal[] slotValues, MutableFraction fraction
+  ) throws InvalidExpressionException {
+    if (term instanceof ConstantTerm constant) {
+      return fraction.set(constant.value());
+    } else if (term instanceof SlotTerm slot) {
+      return fraction.set(slotValues[slot.slot()]);
+    }
+    return solveExactly((OperationTerm) term, slotValues, fraction, false);
   }
 
-  private boolean isSelfSubtraction(ExpressionNode node) {
-    if (!Operand.SUBTRACTION.equals(node.operand()) || !node.hasNodes()) {
-      return false;
+  /**
+   * Applies an operation to the fraction with {@link ResultCache#calculate}, through the result cache if there is one.
+   */
+  private int apply(MutableFraction fraction, Operand operand, long rightNumerator, long rightDenominator) {
+    return resultCache == null
+      ? ResultCache.calculate(fraction, operand, rightNumerator, rightDenominator)
+      : resultCache.apply(fraction, operand, rightNumerator, rightDenominator);
+  }
+
+  /**
+   * Returns the index of the root operation's child term from which on all remaining child terms are known not to be
+   * negative, or {@link Integer#MAX_VALUE} if the partial results of the operation can't be bounded. With negative
+   * results prohibited, child operations are never negative (they would have been rejected), so only the child values
+   * need to be looked at. Adding such terms only increases the partial result and subtracting them only decreases it.
+   */
+  private int findBoundedFrom(OperationTerm term, BigDecimal[] slotValues) {
+    boolean monotonic = term.operand() == Operand.ADDITION || term.operand() == Operand.SUBTRACTION;
+    if (solutionRange == null || !checkNegativeResults || !monotonic) {
+      return Integer.MAX_VALUE;
     }
-    for (int i = 0; i < node.nodes().size(); i++) {
-      ExpressionNode currentChildNode = node.nodes().get(i);
-      ExpressionNode nextChildNode;
-      try {
-        nextChildNode = node.nodes().get(i + 1);
-      } catch (IndexOutOfBoundsException e) {
-        // last node reached
+    int result = term.terms().size();
+    while (result > 1) {
+      ExpressionTerm child = term.terms().get(result - 1);
+      if (!(child instanceof OperationTerm) && leafValue(child, slotValues).signum() < 0) {
         break;
       }
-      // both current and next child node have the same value
-      boolean isSameNodeValue = currentChildNode.value().equals(nextChildNode.value());
+      result--;
+    }
+    return result;
+  }
+
+  private boolean isWithinSolutionRange(MutableFraction result) {
+    return result.compareTo(exactSolutionRange[0], exactSolutionRange[1]) >= 0
+      && result.compareTo(exactSolutionRange[2], exactSolutionRange[3]) <= 0;
+  }
 
-      // check if current node is specifically addition and if the last child node of current node is the same value
-      // as the next node value (e.g. for case "(a+b)-b-a-a-b", where the b in "(a+b)" is relevant)
-      boolean currentNodeIsAdditionWithSameLastValue = !ExpressionUtil.isSubExpression(currentChildNode.value())
-        && currentChildNode.hasNodes()
-        && Operand.ADDITION.equals(currentChildNode.operand())
-        && currentChildNode.nodes().getLast().value().equals(nextChildNode.value());
+  private InvalidExpressionException outsideSolutionRange(String subject, BigDecimal result) {
+    return new InvalidExpressionException(RejectionReason.SOLUTION_RANGE, () -> String.format(
+      "%s of expression (%f) is outside the defined solution range (%s-%s)",
+      subject, result.floatValue(), solutionRange.min().toPlainString(), solutionRange.max().toPlainString()
+    ));
+  }
 
-      if (isSameNodeValue || currentNodeIsAdditionWithSameLastValue) {
-        return true;
+  private static InvalidExpressionException invalidResult(
+    RejectionReason reason, String description, long leftNumerator, long leftDenominator, Operand operand,
+    long rightNumerator, long rightDenominator, MutableFraction result
+  ) {
+    // the fraction is reused, so only its current value is kept for the message
+    long resultNumerator = result.numerator;
+    long resultDenominator = result.denominator;
+    return new InvalidExpressionException(reason, () -> String.format(
+      "%s: '%s%s%s=%s'", description,
+      MutableFraction.toBigDecimal(leftNumerator, leftDenominator).toPlainString(), operand.symbol(),
+      MutableFraction.toBigDecimal(rightNumerator, rightDenominator).toPlainString(),
+      MutableFraction.toBigDecimal(resultNumerator, resultDenominator).toPlainString()
+    ));
+  }
+
+  private boolean isSelfDivision(BigDecimal left, Operand operand, BigDecimal right) {
+    return operand.equals(Operand.DIVISION) && left.compareTo(right) == 0;
+  }
+
+  /**
+   * Checks if the child term at the given index subtracts the same value as the child term before it adds.
+   */
+  private boolean isSelfSubtraction(OperationTerm term, int index, BigDecimal[] slotValues) {
+    if (!Operand.SUBTRACTION.equals(term.operand())) {
+      return false;
+    }
+    ExpressionTerm previousChildTerm = term.terms().get(index - 1);
+    ExpressionTerm currentChildTerm = term.terms().get(index);
+
+    // both previous and current child term have the same value
+    boolean isSameTermValue = isSameValue(previousChildTerm, currentChildTerm, slotValues);
+
+    // check if previous term is specifically addition and if the last child term of previous term is the same value
+    // as the current term value (e.g. for case "a+b-b-a-a-b", where the b in "a+b" is relevant)
+    boolean previousTermIsAdditionWithSameLastValue = previousChildTerm instanceof OperationTerm operation
+      && !operation.grouped()
+      && Operand.ADDITION.equals(operation.operand())
+      && isSameValue(operation.terms().get(operation.terms().size() - 1), currentChildTerm, slotValues);
+
+    return isSameTermValue || previousTermIsAdditionWithSameLastValue;
+  }
+
+  /**
+   * Checks if both terms render the same expression when their slots are replaced with values.
+   */
+  private boolean isSameValue(ExpressionTerm left, ExpressionTerm right, BigDecimal[] slotValues) {
+    if (left instanceof OperationTerm leftOperation) {
+      if (!(right instanceof OperationTerm rightOperation)
+        || leftOperation.operand() != rightOperation.operand()
+        || leftOperation.grouped() != rightOperation.grouped()
+        || leftOperation.terms().size() != rightOperation.terms().size()) {
+        return false;
+      }
+      for (int i = 0; i < leftOperation.terms().size(); i++) {
+        if (!isSameValue(leftOperation.terms().get(i), rightOperation.terms().get(i), slotValues)) {
+          return false;
+        }
       }
+      return true;
     }
-    return false;
+    if (right instanceof OperationTerm) {
+      return false;
+    }
+    return leafValue(left, slotValues).compareTo(leafValue(right, slotValues)) == 0;
+  }
+
+  private BigDecimal leafValue(ExpressionTerm term, BigDecimal[] slotValues) {
+    return term instanceof SlotTerm slot ? slotValues[slot.slot()] : ((ConstantTerm) term).value();
   }
 
   private boolean isNegativeResult(BigDecimal result) {
-    return result.compareTo(new BigDecimal(0)) < 0;
+    return result.signum() < 0;
   }
 
   private boolean isDecimalResult(BigDecimal result) {
-    return result.stripTrailingZeros().scale() > 0;
+    // values without a positive scale are whole numbers already, so only those with one need to be stripped
+    return result.scale() > 0 && result.stripTrailingZeros().scale() > 0;
   }
 
   private Operand findLastOperand(String expression) {
@@ -225,4 +500,181 @@ public class ExpressionValidator {
     return result;
   }
 
+  /**
+   * The state of a single {@link #validateBatch} call, which solves the expression's {@link ExpressionCode} with a
+   * stack of columns. Rows are cleared from {@code valid} as soon as they violate a rule and moved to {@code undecided}
+   * once their values no longer fit into exact fractions; the checks then only continue for the rows still valid.
+   */
+  private final class Batch {
+
+    private final long[][] slotColumns;
+    private final int rows;
+    private final long[] valid;
+    private final long[] undecided;
+    private final MutableFraction fraction = new MutableFraction();
+
+    Batch(long[][] slotColumns, int rows, long[] valid, long[] undecided) {
+      this.slotColumns = slotColumns;
+      this.rows = rows;
+      this.valid = valid;
+      this.undecided = undecided;
+    }
+
+    void solveAndValidate(ExpressionCode code) {
+      if (!code.isExact()) {
+        undecideAll();
+        return;
+      }
+      // like MutableFraction#set, leave values whose negation overflows to the BigDecimal path
+      for (long[] slotColumn : slotColumns) {
+        for (int row = nextRow(valid, 0); row >= 0; row = nextRow(valid, row + 1)) {
+          if (slotColumn[row] == Long.MIN_VALUE) {
+            undecide(row);
+          }
+        }
+      }
+
+      // slot columns are pushed as they are, all other values are written into the buffers of their stack depth (which
+      // are only allocated once needed, left-deep expressions only ever need the first one)
+      long[][] numerators = new long[code.maxDepth()][];
+      long[][] denominators = new long[code.maxDepth()][];
+      long[][] numeratorBuffers = new long[code.maxDepth()][];
+      long[][] denominatorBuffers = new long[code.maxDepth()][];
+      long[] ones = null;
+      int depth = 0;
+      for (int instruction = 0; instruction < code.length(); instruction++) {
+        switch (code.kind(instruction)) {
+          case ExpressionCode.SLOT -> {
+            if (ones == null) {
+              ones = new long[rows];
+              Arrays.fill(ones, 1);
+            }
+            numerators[depth] = slotColumns[code.slot(instruction)];
+            denominators[depth] = ones;
+            depth++;
+          }
+          case ExpressionCode.CONSTANT -> {
+            allocateBuffers(numeratorBuffers, denominatorBuffers, depth);
+            numerators[depth] = numeratorBuffers[depth];
+            denominators[depth] = denominatorBuffers[depth];
+            Arrays.fill(numerators[depth], code.constantNumerator(code.constant(instruction)));
+            Arrays.fill(denominators[depth], code.constantDenominator(code.constant(instruction)));
+            depth++;
+          }
+          default -> {
+            int[][] selfSubtraction = code.selfSubtraction(instruction);
+            if (checkSelfSubtraction && selfSubtraction != null) {
+              rejectSelfSubtractions(selfSubtraction, code);
+            }
+            depth--;
+            allocateBuffers(numeratorBuffers, denominatorBuffers, depth - 1);
+            apply(
+              code.operand(instruction), numerators[depth - 1], denominators[depth - 1], numerators[depth],
+              denominators[depth], numeratorBuffers[depth - 1], denominatorBuffers[depth - 1]
+            );
+            numerators[depth - 1] = numeratorBuffers[depth - 1];
+            denominators[depth - 1] = denominatorBuffers[depth - 1];
+          }
+        }
+      }
+
+      // check if overall solution is within range and no decimal result
+      for (int row = nextRow(valid, 0); row >= 0; row = nextRow(valid, row + 1)) {
+        fraction.numerator = numerators[0][row];
+        fraction.denominator = denominators[0][row];
+        boolean invalid = solutionRange != null && !isWithinSolutionRange(fraction)
+          || checkDecimalSolution && !fraction.isInteger();
+        if (invalid) {
+          valid[row >>> 6] &= ~(1L << row);
+        }
+      }
+    }
+
+    private void allocateBuffers(long[][] numeratorBuffers, long[][] denominatorBuffers, int depth) {
+      if (numeratorBuffers[depth] == null) {
+        numeratorBuffers[depth] = new long[rows];
+        denominatorBuffers[depth] = new long[rows];
+      }
+    }
+
+    /**
+     * Applies the operand to the left and right values of all valid rows, writing the results into the given columns
+     * (which may be the ones of the left values).
+     */
+    private void apply(
+      Operand operand, long[] leftNumerators, long[] leftDenominators, long[] rightNumerators, long[] rightDenominators,
+      long[] numerators, long[] denominators
+    ) {
+      for (int row = nextRow(valid, 0); row >= 0; row = nextRow(valid, row + 1)) {
+        fraction.numerator = leftNumerators[row];
+        fraction.denominator = leftDenominators[row];
+        int flags = ExpressionValidator.this.apply(fraction, operand, rightNumerators[row], rightDenominators[row]);
+        if (checkSelfDivision && (flags & ResultCache.SELF_DIVISION) != 0) {
+          valid[row >>> 6] &= ~(1L << row);
+          continue;
+        }
+        if ((flags & ResultCache.UNREPRESENTABLE) != 0) {
+          // overflow or division by zero
+          undecide(row);
+          continue;
+        }
+        boolean invalid = checkNegativeResults && (flags & ResultCache.NEGATIVE) != 0
+          || checkDecimalResults && (flags & ResultCache.DECIMAL) != 0;
+        if (invalid) {
+          valid[row >>> 6] &= ~(1L << row);
+          continue;
+        }
+        if ((flags & ResultCache.NON_TERMINATING) != 0) {
+          // the BigDecimal path rounds this result, so the following calculations are no longer exact
+          undecide(row);
+          continue;
+        }
+        numerators[row] = fraction.numerator;
+        denominators[row] = fraction.denominator;
+      }
+    }
+
+    /**
+     * Rejects the rows in which all leaf pairs of any alternative of the self-subtraction check have the same value,
+     * see {@link ExpressionCode#selfSubtraction}.
+     */
+    private void rejectSelfSubtractions(int[][] alternatives, ExpressionCode code) {
+      for (int row = nextRow(valid, 0); row >= 0; row = nextRow(valid, row + 1)) {
+        for (int[] pairs : alternatives) {
+          boolean same = true;
+          for (int i = 0; i < pairs.length && same; i += 2) {
+            same = isSameLeafValue(pairs[i], pairs[i + 1], code, row);
+          }
+          if (same) {
+            valid[row >>> 6] &= ~(1L << row);
+            break;
+          }
+        }
+      }
+    }
+
+    private boolean isSameLeafValue(int left, int right, ExpressionCode code, int row) {
+      if (left >= 0 && right >= 0) {
+        return slotColumns[left][row] == slotColumns[right][row];
+      }
+      // a constant and a slot value (two constants are compared when compiling)
+      int constant = -Math.min(left, right) - 1;
+      long slotValue = slotColumns[Math.max(left, right)][row];
+      return code.constantDenominator(constant) == 1 && code.constantNumerator(constant) == slotValue;
+    }
+
+    private void undecide(int row) {
+      valid[row >>> 6] &= ~(1L << row);
+      undecided[row >>> 6] |= 1L << row;
+    }
+
+    private void undecideAll() {
+      for (int word = 0; word < valid.length; word++) {
+        undecided[word] |= valid[word];
+        valid[word] = 0;
+      }
+    }
+
+  }
+
 }
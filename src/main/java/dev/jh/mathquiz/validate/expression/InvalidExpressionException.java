@@ -1,13 +1,45 @@
 package dev.jh.mathquiz.validate.expression;
 
+import java.util.function.Supplier;
+
 public class InvalidExpressionException extends Exception {
 
+  private final RejectionReason reason;
+  private final transient Supplier<String> messageSupplier;
+
   public InvalidExpressionException(String message) {
-    super(message);
+    this(RejectionReason.INVALID_EXPRESSION, message);
   }
 
   public InvalidExpressionException(String message, Throwable cause) {
     super(message, cause);
+    this.reason = RejectionReason.INVALID_EXPRESSION;
+    this.messageSupplier = null;
+  }
+
+  public InvalidExpressionException(RejectionReason reason, String message) {
+    super(message);
+    this.reason = reason;
+    this.messageSupplier = null;
+  }
+
+  /**
+   * Creates an exception for an expression rejected by a validation rule. Most generated expressions are rejected, so
+   * these exceptions don't capture a stack trace and only format their message once it is requested.
+   */
+  public InvalidExpressionException(RejectionReason reason, Supplier<String> messageSupplier) {
+    super(null, null, false, false);
+    this.reason = reason;
+    this.messageSupplier = messageSupplier;
+  }
+
+  @Override
+  public String getMessage() {
+    return messageSupplier == null ? super.getMessage() : messageSupplier.get();
+  }
+
+  public RejectionReason reason() {
+    return reason;
   }
 
 }
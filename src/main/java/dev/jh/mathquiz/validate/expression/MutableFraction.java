@@ -0,0 +1,142 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+
+import java.math.BigDecimal;
+
+/**
+ * An exact fraction of two {@code long}s, modified in place so that calculating with it doesn't allocate. The fraction
+ * is always reduced and its denominator is positive, so two fractions are equal exactly if their numerators and
+ * denominators are. All operations report values they can't represent (overflows, division by zero) by returning
+ * false, leaving the fraction in an undefined state.
+ */
+final class MutableFraction {
+
+  private static final long[] POWERS_OF_TEN = {
+    1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+    10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+    1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L
+  };
+
+  long numerator;
+  long denominator = 1;
+
+  /**
+   * Sets the fraction to the value of the given decimal, returning false if it doesn't fit.
+   */
+  boolean set(BigDecimal value) {
+    int scale = value.scale();
+    if (value.precision() >= POWERS_OF_TEN.length || scale < 0 || scale >= POWERS_OF_TEN.length) {
+      return false;
+    } else if (scale == 0) {
+      // compact values of scale 0 are converted without allocating
+      return set(value.longValue(), 1);
+    }
+    return set(value.unscaledValue().longValue(), POWERS_OF_TEN[scale]);
+  }
+
+  boolean set(long numerator, long denominator) {
+    if (denominator == 0 || numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE) {
+      return false;
+    }
+    long gcd = gcd(Math.abs(numerator), Math.abs(denominator));
+    this.numerator = (denominator < 0 ? -numerator : numerator) / gcd;
+    this.denominator = Math.abs(denominator) / gcd;
+    return true;
+  }
+
+  /**
+   * Applies the operation with the given (reduced) right side to the fraction.
+   */
+  boolean apply(Operand operand, long rightNumerator, long rightDenominator) {
+    try {
+      return switch (operand) {
+        case ADDITION -> add(rightNumerator, rightDenominator);
+        case SUBTRACTION -> add(-rightNumerator, rightDenominator);
+        case MULTIPLICATION -> multiply(rightNumerator, rightDenominator);
+        case DIVISION -> rightNumerator != 0 && (rightNumerator > 0
+          ? multiply(rightDenominator, rightNumerator)
+          : multiply(-rightDenominator, -rightNumerator));
+      };
+    } catch (ArithmeticException e) {
+      // overflow
+      return false;
+    }
+  }
+
+  boolean isNegative() {
+    return numerator < 0;
+  }
+
+  boolean isInteger() {
+    return denominator == 1;
+  }
+
+  /**
+   * Returns whether the fraction has a finite decimal representation, which is the case if its denominator has no
+   * prime factors other than 2 and 5.
+   */
+  boolean isTerminating() {
+    long rest = denominator >> Long.numberOfTrailingZeros(denominator);
+    while (rest % 5 == 0) {
+      rest /= 5;
+    }
+    return rest == 1;
+  }
+
+  /**
+   * Compares the fraction with another one, using 128-bit products so that the comparison never overflows.
+   */
+  int compareTo(long otherNumerator, long otherDenominator) {
+    long leftHigh = Math.multiplyHigh(numerator, otherDenominator);
+    long rightHigh = Math.multiplyHigh(otherNumerator, denominator);
+    if (leftHigh != rightHigh) {
+      return Long.compare(leftHigh, rightHigh);
+    }
+    return Long.compareUnsigned(numerator * otherDenominator, otherNumerator * denominator);
+  }
+
+  BigDecimal toBigDecimal() {
+    return toBigDecimal(numerator, denominator);
+  }
+
+  /**
+   * Converts a fraction into the decimal the {@link NativeArithmeticEvaluator} calculates for it. Terminating fractions
+   * of {@code long}s have less digits than its precision, so they are converted exactly.
+   */
+  static BigDecimal toBigDecimal(long numerator, long denominator) {
+    BigDecimal result = BigDecimal.valueOf(numerator);
+    if (denominator != 1) {
+      result = result.divide(BigDecimal.valueOf(denominator), NativeArithmeticEvaluator.MATH_CONTEXT);
+    }
+    return result.stripTrailingZeros();
+  }
+
+  private boolean add(long rightNumerator, long rightDenominator) {
+    long gcd = gcd(denominator, rightDenominator);
+    long newNumerator = Math.addExact(
+      Math.multiplyExact(numerator, rightDenominator / gcd), Math.multiplyExact(rightNumerator, denominator / gcd)
+    );
+    return set(newNumerator, Math.multiplyExact(denominator / gcd, rightDenominator));
+  }
+
+  private boolean multiply(long rightNumerator, long rightDenominator) {
+    // cross-reduce first, so that intermediate products stay as small as possible
+    long leftGcd = gcd(Math.abs(numerator), rightDenominator);
+    long rightGcd = gcd(Math.abs(rightNumerator), denominator);
+    long newNumerator = Math.multiplyExact(numerator / leftGcd, rightNumerator / rightGcd);
+    long newDenominator = Math.multiplyExact(denominator / rightGcd, rightDenominator / leftGcd);
+    return set(newNumerator, newDenominator);
+  }
+
+  private static long gcd(long a, long b) {
+    // both values are non-negative, gcd(0, b) is b
+    while (b != 0) {
+      long rest = a % b;
+      a = b;
+      b = rest;
+    }
+    return a == 0 ? 1 : a;
+  }
+
+}
@@ -0,0 +1,42 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Calculates operations with {@link BigDecimal} directly. Uses the same precision and rounding as EvalEx's default
+ * configuration and strips trailing zeros from each result like EvalEx does, so that both produce identical results
+ * (including how they are rendered).
+ */
+public class NativeArithmeticEvaluator implements ArithmeticEvaluator {
+
+  public static final NativeArithmeticEvaluator INSTANCE = new NativeArithmeticEvaluator();
+
+  /**
+   * The precision and rounding of all operations, most notably of non-terminating divisions like 1/3.
+   */
+  public static final MathContext MATH_CONTEXT = new MathContext(68, RoundingMode.HALF_EVEN);
+
+  private NativeArithmeticEvaluator() {
+  }
+
+  @Override
+  public BigDecimal evaluate(BigDecimal left, Operand operand, BigDecimal right) throws InvalidExpressionException {
+    BigDecimal result = switch (operand) {
+      case ADDITION -> left.add(right, MATH_CONTEXT);
+      case SUBTRACTION -> left.subtract(right, MATH_CONTEXT);
+      case MULTIPLICATION -> left.multiply(right, MATH_CONTEXT);
+      case DIVISION -> {
+        if (right.signum() == 0) {
+          throw new InvalidExpressionException("Failed to solve expression term: division by zero");
+        }
+        yield left.divide(right, MATH_CONTEXT);
+      }
+    };
+    return result.stripTrailingZeros();
+  }
+
+}
@@ -0,0 +1,44 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+import dev.jh.mathquiz.util.constant.Symbols;
+
+import java.util.List;
+
+/**
+ * Applies the operand to all terms successively, from left to right. Grouped operations are wrapped in parentheses
+ * when rendered.
+ */
+public record OperationTerm(
+  Operand operand,
+  List<ExpressionTerm> terms,
+  boolean grouped
+) implements ExpressionTerm {
+
+  @Override
+  public void render(StringBuilder builder, String[] slotTexts) {
+    if (grouped) {
+      builder.append(Symbols.PARENTHESES_OPEN);
+    }
+    for (int i = 0; i < terms.size(); i++) {
+      if (i > 0) {
+        builder.append(operand.symbol());
+      }
+      terms.get(i).render(builder, slotTexts);
+    }
+    if (grouped) {
+      builder.append(Symbols.PARENTHESIS_CLOSE);
+    }
+  }
+
+  @Override
+  public boolean containsSlot(int slot) {
+    for (ExpressionTerm term : terms) {
+      if (term.containsSlot(slot)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
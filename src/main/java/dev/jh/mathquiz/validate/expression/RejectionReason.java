@@ -0,0 +1,15 @@
+package dev.jh.mathquiz.validate.expression;
+
+public enum RejectionReason {
+
+  INVALID_EXPRESSION,
+  SELF_DIVISION,
+  SELF_SUBTRACTION,
+  NEGATIVE_RESULT,
+  DECIMAL_RESULT,
+  DECIMAL_SOLUTION,
+  SOLUTION_RANGE,
+  NO_SOLUTION_CANDIDATE,
+  ILLEGAL_STATE
+
+}
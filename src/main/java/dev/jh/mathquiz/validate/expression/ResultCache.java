@@ -0,0 +1,141 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of the exact results of single operations ({@code left operand right}) together with the flags
+ * the validation rules are checked against. With small variable ranges, the same operations are calculated over and
+ * over again, so their results can be looked up instead.
+ * <p>
+ * The cache is direct-mapped: each operation hashes to exactly one entry, and storing an operation evicts whatever
+ * entry was stored there before. Entries are immutable and replaced atomically, so the cache can be shared by all
+ * generation workers without locking; concurrent misses of the same operation simply calculate it twice.
+ */
+public class ResultCache {
+
+  static final int UNREPRESENTABLE = 1;
+  static final int SELF_DIVISION = 1 << 1;
+  static final int NEGATIVE = 1 << 2;
+  static final int DECIMAL = 1 << 3;
+  static final int NON_TERMINATING = 1 << 4;
+
+  private static final int MAX_SIZE = 1 << 24;
+
+  private final AtomicReferenceArray<Entry> entries;
+  private final int shift;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Creates a cache with at least the given amount of entries, rounded up to the next power of two.
+   */
+  public ResultCache(int size) {
+    int capacity = Math.max(2, Integer.highestOneBit(Math.min(MAX_SIZE, Math.max(1, size)) - 1) << 1);
+    this.entries = new AtomicReferenceArray<>(capacity);
+    this.shift = Long.numberOfLeadingZeros(capacity - 1L);
+  }
+
+  public int size() {
+    return entries.length();
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public double hitRate() {
+    long lookups = hits.sum() + misses.sum();
+    return lookups == 0 ? 0 : (double) hits.sum() / lookups;
+  }
+
+  public void resetCounters() {
+    hits.reset();
+    misses.reset();
+  }
+
+  /**
+   * Applies the operation with the given (reduced) right side to the fraction like {@link #calculate}, looking its
+   * result up first and storing it if it wasn't cached yet.
+   */
+  int apply(MutableFraction fraction, Operand operand, long rightNumerator, long rightDenominator) {
+    long leftNumerator = fraction.numerator;
+    long leftDenominator = fraction.denominator;
+    int index = index(leftNumerator, leftDenominator, operand, rightNumerator, rightDenominator);
+    Entry entry = entries.get(index);
+    if (entry != null && entry.matches(leftNumerator, leftDenominator, operand, rightNumerator, rightDenominator)) {
+      hits.increment();
+      fraction.numerator = entry.numerator;
+      fraction.denominator = entry.denominator;
+      return entry.flags;
+    }
+
+    misses.increment();
+    int flags = calculate(fraction, operand, rightNumerator, rightDenominator);
+    entries.set(index, new Entry(
+      leftNumerator, leftDenominator, operand, rightNumerator, rightDenominator, fraction.numerator,
+      fraction.denominator, flags
+    ));
+    return flags;
+  }
+
+  /**
+   * Applies the operation with the given (reduced) right side to the fraction and returns the flags of its result. If
+   * the result can't be represented ({@link #UNREPRESENTABLE}), the fraction is left in an undefined state and no
+   * other flags but {@link #SELF_DIVISION} are set.
+   */
+  static int calculate(MutableFraction fraction, Operand operand, long rightNumerator, long rightDenominator) {
+    int flags = operand == Operand.DIVISION
+      && fraction.numerator == rightNumerator && fraction.denominator == rightDenominator ? SELF_DIVISION : 0;
+    if (!fraction.apply(operand, rightNumerator, rightDenominator)) {
+      return flags | UNREPRESENTABLE;
+    }
+    if (fraction.isNegative()) {
+      flags |= NEGATIVE;
+    }
+    if (!fraction.isInteger()) {
+      flags |= DECIMAL;
+      if (!fraction.isTerminating()) {
+        flags |= NON_TERMINATING;
+      }
+    }
+    return flags;
+  }
+
+  private int index(
+    long leftNumerator, long leftDenominator, Operand operand, long rightNumerator, long rightDenominator
+  ) {
+    long hash = leftNumerator * 0x9E3779B97F4A7C15L + leftDenominator;
+    hash = (hash * 0x9E3779B97F4A7C15L + rightNumerator) * 0x9E3779B97F4A7C15L + rightDenominator;
+    hash = (hash * 0x9E3779B97F4A7C15L + operand.ordinal()) * 0xBF58476D1CE4E5B9L;
+    return (int) ((hash ^ (hash >>> 31)) >>> shift);
+  }
+
+  private record Entry(
+    long leftNumerator,
+    long leftDenominator,
+    Operand operand,
+    long rightNumerator,
+    long rightDenominator,
+    long numerator,
+    long denominator,
+    int flags
+  ) {
+
+    boolean matches(
+      long leftNumerator, long leftDenominator, Operand operand, long rightNumerator, long rightDenominator
+    ) {
+      return this.leftNumerator == leftNumerator && this.rightNumerator == rightNumerator
+        && this.leftDenominator == leftDenominator && this.rightDenominator == rightDenominator
+        && this.operand == operand;
+    }
+
+  }
+
+}
@@ -0,0 +1,17 @@
+package dev.jh.mathquiz.validate.expression;
+
+public record SlotTerm(
+  int slot
+) implements ExpressionTerm {
+
+  @Override
+  public void render(StringBuilder builder, String[] slotTexts) {
+    builder.append(slotTexts[slot]);
+  }
+
+  @Override
+  public boolean containsSlot(int slot) {
+    return this.slot == slot;
+  }
+
+}
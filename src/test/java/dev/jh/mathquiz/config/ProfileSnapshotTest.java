@@ -0,0 +1,121 @@
+package dev.jh.mathquiz.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfileSnapshotTest {
+
+  // sets every config property, with decimals in different scales
+  private static final String FULL_PROFILE = """
+    export.format=json
+    export.file.path=exports
+    export.file.name=quizzes
+    export.file.with-timestamp=false
+    export.file.overwrite-existing=true
+    quiz.amount=250
+    quiz.equation-order=2,1
+    quiz.parallelism=4
+    quiz.seed=-42
+    quiz.unique=true
+    quiz.unique.memory-budget=16
+    quiz.retry.policy=budgeted
+    quiz.retry.quiz-attempts=12
+    quiz.retry.equation-attempts=34
+    quiz.retry.attempt-budget=5000
+    quiz.retry.identical-rejections=3
+    quiz.timeout.run=60000
+    quiz.timeout.quiz=250
+    quiz.evaluation=cross-check
+    quiz.result-cache.size=4096
+    variable.1.identifier=a
+    variable.1.range=1,10
+    variable.2.identifier=b
+    variable.2.range=-5,5.50
+    equation.1.operands=+,-,*,/
+    equation.1.variables.amount=3
+    equation.1.variables.combos=a,b#b,a
+    equation.1.variables.as-identifiers=true
+    equation.1.mutation.enabled=true
+    equation.1.mutation.chance=0.30
+    equation.1.mutation.multiplier=0.5
+    equation.1.mutation.amplifier=1,3
+    equation.1.mutation.affected-variables=a,b
+    equation.1.validate.self-division=true
+    equation.1.validate.self-subtraction=false
+    equation.1.validate.negative-results=true
+    equation.1.validate.decimal-results=false
+    equation.1.validate.decimal-solution=true
+    equation.1.solution.range=0,1E+2
+    equation.1.solution.hide=true
+    equation.1.strategy=enumerated
+    equation.2.operands=+
+    equation.2.variables.amount=2
+    equation.2.strategy=batched
+    """;
+
+  // leaves most properties unset
+  private static final String SPARSE_PROFILE = """
+    quiz.amount=5
+    variable.1.identifier=a
+    equation.1.operands=-
+    """;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void readReturnsWrittenConfig() throws IOException {
+    for (String profile : new String[] {FULL_PROFILE, SPARSE_PROFILE}) {
+      Config config = load(profile).config();
+      byte[] hash = ProfileSnapshot.hash(profile.getBytes(StandardCharsets.UTF_8));
+      Path snapshot = directory.resolve("snapshot.bin");
+      ProfileSnapshot.write(snapshot, hash, config);
+      assertEquals(config, ProfileSnapshot.read(snapshot, hash));
+    }
+  }
+
+  @Test
+  void readIgnoresMissingOrOutdatedSnapshots() throws IOException {
+    Path snapshot = directory.resolve("snapshot.bin");
+    byte[] hash = ProfileSnapshot.hash(SPARSE_PROFILE.getBytes(StandardCharsets.UTF_8));
+    assertNull(ProfileSnapshot.read(snapshot, hash));
+
+    ProfileSnapshot.write(snapshot, hash, load(SPARSE_PROFILE).config());
+    byte[] otherHash = ProfileSnapshot.hash(FULL_PROFILE.getBytes(StandardCharsets.UTF_8));
+    assertNull(ProfileSnapshot.read(snapshot, otherHash));
+  }
+
+  @Test
+  void loaderUsesSnapshotUntilProfileChanges() throws IOException {
+    LoadedProfile parsed = load(FULL_PROFILE);
+    assertFalse(parsed.fromSnapshot());
+    ConfigLoader configLoader = new ConfigLoader(directory.resolve("config.properties"));
+    configLoader.writeSnapshot(parsed);
+
+    LoadedProfile snapshot = configLoader.loadProfile("test");
+    assertTrue(snapshot.fromSnapshot());
+    assertEquals(parsed.config(), snapshot.config());
+
+    LoadedProfile changed = load(FULL_PROFILE.replace("quiz.amount=250", "quiz.amount=251"));
+    assertFalse(changed.fromSnapshot());
+    assertEquals(251, changed.config().quiz().amount());
+  }
+
+  private LoadedProfile load(String profile) throws IOException {
+    Files.createDirectories(directory.resolve("profiles"));
+    Files.writeString(directory.resolve("config.properties"), "profiles.use=test\nstartup.fast=true\n");
+    Files.writeString(directory.resolve("profiles/test.properties"), profile);
+    return new ConfigLoader(directory.resolve("config.properties")).loadProfile("test");
+  }
+
+}
@@ -0,0 +1,151 @@
+package dev.jh.mathquiz.process;
+
+import dev.jh.mathquiz.config.Config;
+import dev.jh.mathquiz.config.ConfigLoader;
+import dev.jh.mathquiz.config.QuizConfig;
+import dev.jh.mathquiz.validate.config.ConfigValidator;
+import dev.jh.mathquiz.validate.config.InvalidConfigException;
+import dev.jh.mathquiz.validate.expression.ExpressionNodeConverter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MathQuizGeneratorTest {
+
+  // one equation per strategy, so that the seeding of each of them is covered
+  private static final String PROFILE = """
+    export.format=text
+    quiz.amount=300
+    quiz.equation-order=1,2,3,4,5
+    quiz.seed=42
+    variable.1.identifier=a
+    variable.1.range=1,10
+    variable.2.identifier=b
+    variable.2.range=1,10
+    variable.3.identifier=c
+    variable.3.range=1,10
+    equation.1.operands=+,-,*,/
+    equation.1.variables.amount=3
+    equation.1.variables.combos=a,b#b,c
+    equation.1.variables.as-identifiers=true
+    equation.1.mutation.enabled=true
+    equation.1.mutation.chance=0.3
+    equation.1.mutation.multiplier=0.5
+    equation.1.mutation.amplifier=1,3
+    equation.1.mutation.affected-variables=a
+    equation.1.validate.self-division=true
+    equation.1.validate.self-subtraction=true
+    equation.1.validate.negative-results=true
+    equation.1.validate.decimal-results=true
+    equation.1.validate.decimal-solution=false
+    equation.1.solution.range=0,50
+    equation.1.solution.hide=false
+    equation.2.operands=+,-,*
+    equation.2.variables.amount=3
+    equation.2.variables.combos=a,b,c
+    equation.2.variables.as-identifiers=true
+    equation.2.mutation.enabled=false
+    equation.2.validate.self-division=false
+    equation.2.validate.self-subtraction=false
+    equation.2.validate.negative-results=true
+    equation.2.validate.decimal-results=false
+    equation.2.validate.decimal-solution=false
+    equation.2.solution.range=0,30
+    equation.2.solution.hide=false
+    equation.2.strategy=constructive
+    equation.3.operands=+,-,*,/
+    equation.3.variables.amount=2
+    equation.3.variables.combos=a,b#a,c
+    equation.3.variables.as-identifiers=false
+    equation.3.mutation.enabled=false
+    equation.3.validate.self-division=false
+    equation.3.validate.self-subtraction=false
+    equation.3.validate.negative-results=false
+    equation.3.validate.decimal-results=true
+    equation.3.validate.decimal-solution=false
+    equation.3.solution.range=0,20
+    equation.3.solution.hide=false
+    equation.3.strategy=enumerated
+    equation.4.operands=+,-,*,/
+    equation.4.variables.amount=3
+    equation.4.variables.combos=a,b,c
+    equation.4.variables.as-identifiers=true
+    equation.4.mutation.enabled=false
+    equation.4.validate.self-division=false
+    equation.4.validate.self-subtraction=true
+    equation.4.validate.negative-results=true
+    equation.4.validate.decimal-results=false
+    equation.4.validate.decimal-solution=false
+    equation.4.solution.range=0,40
+    equation.4.solution.hide=false
+    equation.4.strategy=batched
+    equation.5.operands=+,*
+    equation.5.variables.amount=2
+    equation.5.variables.combos=b,c
+    equation.5.variables.as-identifiers=true
+    equation.5.mutation.enabled=false
+    equation.5.validate.self-division=false
+    equation.5.validate.self-subtraction=false
+    equation.5.validate.negative-results=false
+    equation.5.validate.decimal-results=false
+    equation.5.validate.decimal-solution=false
+    equation.5.solution.range=0,60
+    equation.5.solution.hide=false
+    equation.5.strategy=adaptive
+    """;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void seededQuizzesDontDependOnParallelism() throws IOException, InvalidConfigException {
+    Config config = loadConfig();
+    List<MathQuiz> expected = generator().generateQuizzes(withParallelism(config, 1));
+    assertEquals(300, expected.size());
+    for (int parallelism : new int[] {2, 3, 8}) {
+      List<MathQuiz> quizzes = generator().generateQuizzes(withParallelism(config, parallelism));
+      assertEquals(expected, quizzes, "parallelism " + parallelism);
+    }
+  }
+
+  @Test
+  void seededQuizCanBeRegeneratedFromItsIndex() throws IOException, InvalidConfigException {
+    Config config = withParallelism(loadConfig(), 4);
+    List<MathQuiz> quizzes = generator().generateQuizzes(config);
+    for (int index : new int[] {1, 2, 150, 300}) {
+      assertEquals(quizzes.get(index - 1), generator().generateQuiz(config, index), "quiz " + index);
+    }
+  }
+
+  private Config loadConfig() throws IOException, InvalidConfigException {
+    Files.createDirectories(directory.resolve("profiles"));
+    Files.writeString(directory.resolve("config.properties"), "profiles.use=seeded\nstartup.fast=true\n");
+    Files.writeString(directory.resolve("profiles/seeded.properties"), PROFILE);
+    Config result = new ConfigLoader(directory.resolve("config.properties")).loadProfile("seeded").config();
+    new ConfigValidator().validate(result);
+    return result;
+  }
+
+  private static MathQuizGenerator generator() {
+    return new MathQuizGenerator(new ExpressionNodeConverter());
+  }
+
+  private static Config withParallelism(Config config, int parallelism) {
+    QuizConfig quiz = config.quiz();
+    return new Config(
+      config.export(),
+      new QuizConfig(
+        quiz.amount(), quiz.equationOrder(), parallelism, quiz.seed(), quiz.unique(), quiz.uniqueMemoryBudget(),
+        quiz.retry(), quiz.timeout(), quiz.evaluation(), quiz.resultCacheSize()
+      ),
+      config.variables(), config.equations()
+    );
+  }
+
+}
@@ -0,0 +1,80 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExpressionParserTest {
+
+  @Test
+  void subtractionBindsLoosest() throws InvalidExpressionException {
+    ExpressionNode node = parse("8-2+1");
+    assertNode(node, "8-2+1", Operand.SUBTRACTION, "8", "2+1");
+    assertNode(node.nodes().get(1), "2+1", Operand.ADDITION, "2", "1");
+    assertEquals(new BigDecimal("5"), new ExpressionValidator(new ExpressionNodeConverter()).solveAndValidate("8-2+1"));
+  }
+
+  @Test
+  void divisionBindsTightest() throws InvalidExpressionException {
+    ExpressionNode node = parse("1+2*3/4");
+    assertNode(node, "1+2*3/4", Operand.ADDITION, "1", "2*3/4");
+    assertNode(node.nodes().get(1), "2*3/4", Operand.MULTIPLICATION, "2", "3/4");
+    assertNode(node.nodes().get(1).nodes().get(1), "3/4", Operand.DIVISION, "3", "4");
+  }
+
+  @Test
+  void successiveOperandsFormSingleNode() throws InvalidExpressionException {
+    assertNode(parse("1-2-3-4"), "1-2-3-4", Operand.SUBTRACTION, "1", "2", "3", "4");
+    assertNode(parse("2*3*4+5"), "2*3*4+5", Operand.ADDITION, "2*3*4", "5");
+  }
+
+  @Test
+  void parenthesesOverridePrecedence() throws InvalidExpressionException {
+    ExpressionNode node = parse("(8-2)+1");
+    assertNode(node, "(8-2)+1", Operand.ADDITION, "8-2", "1");
+    assertNode(node.nodes().get(0), "8-2", Operand.SUBTRACTION, "8", "2");
+    assertNode(parse("((1+2))"), "1+2", Operand.ADDITION, "1", "2");
+  }
+
+  @Test
+  void valuesKeepTheirParentheses() throws InvalidExpressionException {
+    ExpressionNode node = parse("(3)");
+    assertEquals("(3)", node.value());
+    assertFalse(node.hasNodes());
+    assertNode(parse("2*(3)"), "2*(3)", Operand.MULTIPLICATION, "2", "(3)");
+  }
+
+  @Test
+  void reportsPositionOfErrors() {
+    assertInvalid("1+", "Missing value at the end at position 2 of expression '1+'");
+    assertInvalid("1+*2", "Expected value instead of '*' at position 2 of expression '1+*2'");
+    assertInvalid("-1", "Expected value instead of '-' at position 0 of expression '-1'");
+    assertInvalid("2*(1+2", "Missing closing parenthesis for '(' at position 2 of expression '2*(1+2'");
+    assertInvalid("1+2)", "Unexpected ')' at position 3 of expression '1+2)'");
+    assertInvalid("()", "Expected value instead of ')' at position 1 of expression '()'");
+  }
+
+  private static ExpressionNode parse(String expression) throws InvalidExpressionException {
+    return new ExpressionParser(expression).parse();
+  }
+
+  private static void assertNode(ExpressionNode node, String value, Operand operand, String... children) {
+    assertEquals(value, node.value());
+    assertEquals(operand, node.operand());
+    assertEquals(List.of(children), node.nodes().stream().map(ExpressionNode::value).toList());
+  }
+
+  private static void assertInvalid(String expression, String message) {
+    InvalidExpressionException e = assertThrows(InvalidExpressionException.class, () -> parse(expression));
+    assertEquals(message, e.getMessage());
+    assertNull(e.getCause());
+  }
+
+}
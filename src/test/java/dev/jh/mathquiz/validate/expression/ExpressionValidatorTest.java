@@ -0,0 +1,234 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+import dev.jh.mathquiz.util.type.Range;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the exact fast path of the validator (fractions of {@code long}s) comes to the same results and
+ * rejections as the BigDecimal path, also where its values stop fitting and it has to hand over, and that batch
+ * validation accepts exactly the rows validating them one by one accepts.
+ */
+class ExpressionValidatorTest {
+
+  private static final ExpressionNodeConverter CONVERTER = new ExpressionNodeConverter();
+
+  @Test
+  void sameResultsAroundOverflow() {
+    assertSameOutcomes(
+      false,
+      "9223372036854775806+1",
+      "9223372036854775807+1",
+      "0-9223372036854775806-1",
+      "0-9223372036854775807-1",
+      "3037000499*3037000499",
+      "3037000500*3037000500",
+      "4611686018427387904*2",
+      "99999999999999999+1",
+      "999999999999999999+1",
+      "0.12345678901234567+0.1",
+      "0.123456789012345678+0.1"
+    );
+  }
+
+  @Test
+  void sameResultsAroundDivision() {
+    assertSameOutcomes(
+      false,
+      "1/0",
+      "5/(2-2)",
+      "10/4",
+      "7/7",
+      "1/3*3",
+      "2/3+1/3",
+      "1/2147483648/2147483648",
+      "1/4294967296/2147483648",
+      "1/4294967296/4294967296",
+      "1/7450580596923828125",
+      "3/7450580596923828125/2",
+      "0.1+0.2",
+      "9223372036854775807/3037000499/3037000499"
+    );
+  }
+
+  @Test
+  void sameRejections() {
+    assertSameOutcomes(
+      true,
+      "2-3",
+      "7/2",
+      "4/4",
+      "5-5",
+      "1/0",
+      "10/4*2",
+      "90+20+1",
+      "200-150-10",
+      "100-150+60",
+      "0-9223372036854775807-1",
+      "3037000500*3037000500",
+      "1/3*3",
+      "1/4294967296/4294967296"
+    );
+  }
+
+  @Test
+  void exactPathHandlesValuesThatFit() throws InvalidExpressionException {
+    // the result cache is only used by the exact path
+    ResultCache resultCache = new ResultCache(64);
+    ExpressionValidator validator = new ExpressionValidator(CONVERTER).cacheResultsIn(resultCache);
+    assertEquals(new BigDecimal("9223372030926249001"), validator.solveAndValidate("3037000499*3037000499"));
+    assertTrue(resultCache.misses() > 0);
+  }
+
+  @Test
+  void batchLeavesMinimumLongToBigDecimalPath() {
+    // -Long.MIN_VALUE doesn't fit, so 11 - MIN_VALUE is only positive with BigDecimal
+    ExpressionValidator validator = new ExpressionValidator(CONVERTER).prohibitNegativeResults(true);
+    ExpressionTerm expression = new OperationTerm(
+      Operand.SUBTRACTION, List.of(new ConstantTerm(BigDecimal.valueOf(11)), new SlotTerm(0)), false
+    );
+    assertBatchMatchesRows(validator, expression, new long[][] {{Long.MIN_VALUE, 12, 3}}, 3);
+  }
+
+  @Test
+  void batchMatchesRows() {
+    Random random = new Random(17);
+    for (int run = 0; run < 2_000; run++) {
+      ExpressionValidator validator = new ExpressionValidator(CONVERTER)
+        .prohibitSelfDivision(random.nextBoolean())
+        .prohibitSelfSubtraction(random.nextBoolean())
+        .prohibitNegativeResults(random.nextBoolean())
+        .prohibitDecimalResults(random.nextBoolean())
+        .prohibitDecimalSolution(random.nextBoolean());
+      if (random.nextBoolean()) {
+        validator.keepWithinSolutionRange(new Range(
+          BigDecimal.valueOf(random.nextInt(20) - 5), BigDecimal.valueOf(random.nextInt(200))
+        ));
+      }
+      int slots = 2 + random.nextInt(4);
+      ExpressionTerm expression = random.nextBoolean()
+        ? randomLinearExpression(random, slots)
+        : randomTerm(random, slots, 3);
+      int rows = 1 + random.nextInt(200);
+      long[][] slotColumns = new long[slots][rows];
+      for (long[] slotColumn : slotColumns) {
+        for (int row = 0; row < rows; row++) {
+          slotColumn[row] = randomValue(random);
+        }
+      }
+      assertBatchMatchesRows(validator, expression, slotColumns, rows);
+    }
+  }
+
+  private static void assertBatchMatchesRows(
+    ExpressionValidator validator, ExpressionTerm expression, long[][] slotColumns, int rows
+  ) {
+    long[] valid = validator.validateBatch(expression, slotColumns, rows);
+    for (int row = 0; row < valid.length * 64; row++) {
+      boolean expected = false;
+      String[] slotTexts = new String[slotColumns.length];
+      if (row < rows) {
+        BigDecimal[] slotValues = new BigDecimal[slotColumns.length];
+        for (int slot = 0; slot < slotColumns.length; slot++) {
+          slotValues[slot] = BigDecimal.valueOf(slotColumns[slot][row]);
+          slotTexts[slot] = slotValues[slot].toPlainString();
+        }
+        try {
+          validator.solveAndValidate(expression, slotValues);
+          expected = true;
+        } catch (InvalidExpressionException e) {
+          // row is not valid
+        }
+      }
+      boolean actual = (valid[row >>> 6] & 1L << row) != 0;
+      assertEquals(expected, actual, row < rows ? expression.render(slotTexts) : "row " + row + " beyond rows");
+    }
+  }
+
+  /**
+   * Connects slots (some of them mutated like the generator does) with random operands, grouped by precedence.
+   */
+  private static ExpressionTerm randomLinearExpression(Random random, int slots) {
+    List<ExpressionTerm> terms = new ArrayList<>();
+    List<Operand> operands = new ArrayList<>();
+    for (int slot = 0; slot < slots; slot++) {
+      ExpressionTerm term = new SlotTerm(slot);
+      if (random.nextInt(4) == 0) {
+        ConstantTerm multiplier = new ConstantTerm(new BigDecimal(random.nextBoolean() ? "0.5" : "3"));
+        term = new OperationTerm(Operand.MULTIPLICATION, List.of(term, multiplier), true);
+      }
+      terms.add(term);
+      if (slot > 0) {
+        operands.add(Operand.values()[random.nextInt(Operand.values().length)]);
+      }
+    }
+    return CONVERTER.toExpressionTerm(terms, operands);
+  }
+
+  /**
+   * Builds a random tree in which slots and constants may occur several times, so that self-subtractions of whole
+   * sub terms are common.
+   */
+  private static ExpressionTerm randomTerm(Random random, int slots, int depth) {
+    if (depth == 0 || random.nextInt(3) == 0) {
+      return random.nextInt(5) == 0
+        ? new ConstantTerm(BigDecimal.valueOf(random.nextInt(4)))
+        : new SlotTerm(random.nextInt(slots));
+    }
+    List<ExpressionTerm> terms = new ArrayList<>();
+    for (int i = 2 + random.nextInt(2); i > 0; i--) {
+      terms.add(randomTerm(random, slots, depth - 1));
+    }
+    return new OperationTerm(Operand.values()[random.nextInt(Operand.values().length)], terms, true);
+  }
+
+  private static long randomValue(Random random) {
+    return switch (random.nextInt(40)) {
+      case 0 -> Long.MIN_VALUE;
+      case 1 -> Long.MAX_VALUE;
+      case 2 -> 3_000_000_000_000_000_000L / (1 + random.nextInt(3));
+      default -> random.nextInt(8) - 2;
+    };
+  }
+
+  private static void assertSameOutcomes(boolean withRules, String... expressions) {
+    ExpressionValidator exact = configure(new ExpressionValidator(CONVERTER), withRules);
+    // any evaluator other than the native instance itself disables the exact path
+    ExpressionValidator bigDecimal = configure(
+      new ExpressionValidator(CONVERTER).evaluateWith(NativeArithmeticEvaluator.INSTANCE::evaluate), withRules
+    );
+    for (String expression : expressions) {
+      assertEquals(outcome(bigDecimal, expression), outcome(exact, expression), expression);
+    }
+  }
+
+  private static ExpressionValidator configure(ExpressionValidator validator, boolean withRules) {
+    if (!withRules) {
+      return validator;
+    }
+    return validator
+      .keepWithinSolutionRange(new Range(BigDecimal.ZERO, BigDecimal.valueOf(100)))
+      .prohibitSelfDivision(true)
+      .prohibitSelfSubtraction(true)
+      .prohibitNegativeResults(true)
+      .prohibitDecimalResults(true)
+      .prohibitDecimalSolution(true);
+  }
+
+  private static String outcome(ExpressionValidator validator, String expression) {
+    try {
+      return validator.solveAndValidate(expression).toPlainString();
+    } catch (InvalidExpressionException e) {
+      return e.reason() + ": " + e.getMessage();
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+package dev.jh.mathquiz.validate.expression;
+
+import dev.jh.mathquiz.process.Operand;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MutableFractionTest {
+
+  @Test
+  void setReducesAndNormalizesSign() {
+    MutableFraction fraction = new MutableFraction();
+    assertTrue(fraction.set(6, -4));
+    assertEquals(-3L, fraction.numerator);
+    assertEquals(2L, fraction.denominator);
+
+    assertTrue(fraction.set(new BigDecimal("2.50")));
+    assertEquals(5L, fraction.numerator);
+    assertEquals(2L, fraction.denominator);
+  }
+
+  @Test
+  void setRejectsValuesThatDontFit() {
+    MutableFraction fraction = new MutableFraction();
+    assertTrue(fraction.set(new BigDecimal("99999999999999999")));
+    assertFalse(fraction.set(new BigDecimal("999999999999999999")));
+    assertFalse(fraction.set(new BigDecimal("0.123456789012345678")));
+    assertFalse(fraction.set(new BigDecimal("1E+3")));
+    assertFalse(fraction.set(Long.MIN_VALUE, 1));
+    assertFalse(fraction.set(1, 0));
+  }
+
+  @Test
+  void applyDetectsOverflow() {
+    assertTrue(apply(Long.MAX_VALUE - 1, Operand.ADDITION, 1));
+    assertFalse(apply(Long.MAX_VALUE, Operand.ADDITION, 1));
+    assertTrue(apply(-Long.MAX_VALUE + 1, Operand.SUBTRACTION, 1));
+    assertFalse(apply(-Long.MAX_VALUE, Operand.SUBTRACTION, 1));
+    // 3037000499 is the largest square root within the range of long
+    assertTrue(apply(3037000499L, Operand.MULTIPLICATION, 3037000499L));
+    assertFalse(apply(3037000500L, Operand.MULTIPLICATION, 3037000500L));
+  }
+
+  @Test
+  void applyDividesExactly() {
+    MutableFraction fraction = new MutableFraction();
+    fraction.set(1, 1);
+    assertTrue(fraction.apply(Operand.DIVISION, -3, 1));
+    assertEquals(-1L, fraction.numerator);
+    assertEquals(3L, fraction.denominator);
+    assertTrue(fraction.apply(Operand.MULTIPLICATION, -3, 1));
+    assertTrue(fraction.isInteger());
+    assertEquals(1L, fraction.numerator);
+
+    // the denominator of 2^-63 doesn't fit
+    fraction.set(1, 1L << 62);
+    assertFalse(fraction.apply(Operand.DIVISION, 2, 1));
+    fraction.set(1, 1);
+    assertFalse(fraction.apply(Operand.DIVISION, 0, 1));
+  }
+
+  @Test
+  void isTerminatingOnlyForDenominatorsOfTwosAndFives() {
+    MutableFraction fraction = new MutableFraction();
+    fraction.set(1, 40);
+    assertTrue(fraction.isTerminating());
+    fraction.set(1, 7450580596923828125L);
+    assertTrue(fraction.isTerminating());
+    fraction.set(1, 6);
+    assertFalse(fraction.isTerminating());
+  }
+
+  @Test
+  void compareToDoesNotOverflow() {
+    MutableFraction fraction = new MutableFraction();
+    // 1 + 1/(MAX - 1) < 1 + 1/(MAX - 2), although both cross products overflow 64 bits
+    fraction.set(Long.MAX_VALUE, Long.MAX_VALUE - 1);
+    assertTrue(fraction.compareTo(Long.MAX_VALUE - 1, Long.MAX_VALUE - 2) < 0);
+    assertTrue(fraction.compareTo(Long.MAX_VALUE, Long.MAX_VALUE - 1) == 0);
+    fraction.set(-Long.MAX_VALUE, 3);
+    assertTrue(fraction.compareTo(Long.MAX_VALUE, 3) < 0);
+    assertTrue(fraction.compareTo(-Long.MAX_VALUE, 2) > 0);
+  }
+
+  @Test
+  void toBigDecimalMatchesNativeEvaluator() throws InvalidExpressionException {
+    assertEquals(
+      NativeArithmeticEvaluator.INSTANCE.evaluate(BigDecimal.ONE, Operand.DIVISION, BigDecimal.valueOf(3)),
+      MutableFraction.toBigDecimal(1, 3)
+    );
+    assertEquals(new BigDecimal("0.025"), MutableFraction.toBigDecimal(1, 40));
+    assertEquals(new BigDecimal("1E+2"), MutableFraction.toBigDecimal(100, 1));
+  }
+
+  private static boolean apply(long left, Operand operand, long right) {
+    MutableFraction fraction = new MutableFraction();
+    fraction.set(left, 1);
+    return fraction.apply(operand, right, 1);
+  }
+
+}